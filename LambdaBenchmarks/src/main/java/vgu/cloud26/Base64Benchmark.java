@@ -0,0 +1,63 @@
+package vgu.cloud26;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Base64 wie in LambdaGetObject (encode der S3-Bytes) und LambdaUploadObject (decode des Uploads,
+// am Stück oder teilweise wie im Multipart-Pfad)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+
+    // 64 KiB Thumbnail, 1 MiB Foto, 8 MiB großes Original
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private byte[] raw;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        raw = new byte[size];
+        new Random(42).nextBytes(raw);
+        encoded = Base64.getEncoder().encodeToString(raw);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64.getEncoder().encodeToString(raw);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64.getDecoder().decode(encoded);
+    }
+
+    // Teilweise dekodieren wie MultipartUploader: Teilstücke an 4-Zeichen-Grenzen
+    @Benchmark
+    public void decodeInParts(Blackhole blackhole) {
+        int charsPerPart = (MultipartUploader.MIN_PART_SIZE + 2) / 3 * 4;
+        for (int start = 0; start < encoded.length(); start += charsPerPart) {
+            int end = Math.min(start + charsPerPart, encoded.length());
+            blackhole.consume(Base64.getDecoder().decode(encoded.substring(start, end)));
+        }
+    }
+}
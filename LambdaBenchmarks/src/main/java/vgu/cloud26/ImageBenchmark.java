@@ -0,0 +1,114 @@
+package vgu.cloud26;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Resize/Encode-Pfad von LambdaResizer und dem fused Upload (ImageRenditions + ImageEncoder).
+// "rgb" = Foto als JPEG, "argb" = PNG mit Transparenz (bleibt PNG).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+
+    private static final List<Integer> DEFAULT_SIZES = List.of((int) ImageRenditions.MAX_DIMENSION);
+    private static final List<Integer> MULTI_SIZES = List.of(1600, 800, 300, 150);
+
+    @Param({"640", "1920", "4000"})
+    public int sourceWidth;
+
+    @Param({"rgb", "argb"})
+    public String imageType;
+
+    private BufferedImage source;
+    private BufferedImage thumbnail;
+    private byte[] encodedSource;
+    private boolean keepAlpha;
+    private String format;
+    private ImageEncoder encoder;
+
+    @Setup
+    public void setup() throws IOException {
+        keepAlpha = "argb".equals(imageType);
+        format = keepAlpha ? ImageEncoder.PNG_TYPE : ImageEncoder.JPG_TYPE;
+        encoder = new ImageEncoder(0.75f, true);
+
+        source = syntheticImage(sourceWidth, sourceWidth * 3 / 4, keepAlpha);
+        thumbnail = ImageRenditions.resizeImage(source, ImageRenditions.MAX_DIMENSION, keepAlpha);
+
+        // Quelle so kodiert, wie sie aus S3 käme
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(source, format, out);
+        encodedSource = out.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage resize() {
+        return ImageRenditions.resizeImage(source, ImageRenditions.MAX_DIMENSION, keepAlpha);
+    }
+
+    @Benchmark
+    public byte[] encodeThumbnail() throws IOException {
+        return encoder.encode(thumbnail, format);
+    }
+
+    // Kompletter Resizer-Pfad: Decode (mit Subsampling) -> Resize -> Encode
+    @Benchmark
+    public boolean renderFromBytes(Blackhole blackhole) throws IOException {
+        return ImageRenditions.render(new ByteArrayInputStream(encodedSource), DEFAULT_SIZES, "bench.jpg",
+                encoder, blackhole::consume);
+    }
+
+    @Benchmark
+    public boolean renderMultipleSizes(Blackhole blackhole) throws IOException {
+        return ImageRenditions.render(new ByteArrayInputStream(encodedSource), MULTI_SIZES, "bench.jpg",
+                encoder, blackhole::consume);
+    }
+
+    // Verlauf + Rauschen, damit JPEG/PNG realistisch viel zu tun haben (einfarbig wäre zu billig)
+    static BufferedImage syntheticImage(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(30, 90, 160), width, height, new Color(230, 180, 60)));
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                    alpha ? random.nextInt(256) : 255));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), width / 20 + 1, height / 20 + 1);
+        }
+        graphics.dispose();
+        for (int i = 0; i < width * height / 8; i++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            image.setRGB(x, y, image.getRGB(x, y) ^ (random.nextInt(32) * 0x010101));
+        }
+        return image;
+    }
+}
@@ -0,0 +1,91 @@
+package vgu.cloud26;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+// Antwort von LambdaGetListOfObjects: alter Weg (JSONArray aus JSONObjects) gegen JSONWriter,
+// dazu die komplette Antwort mit gzip über JsonResponses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonListingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private String[] keys;
+    private long[] sizes;
+    private String listing;
+    private APIGatewayProxyRequestEvent gzipRequest;
+
+    @Setup
+    public void setup() {
+        keys = new String[entries];
+        sizes = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = "album-" + (i / 100) + "/IMG_" + (10000 + i) + ".jpg";
+            sizes[i] = 200_000L + (i * 7919L) % 5_000_000L;
+        }
+        listing = jsonWriter();
+        gzipRequest = new APIGatewayProxyRequestEvent()
+                .withHeaders(Map.of("accept-encoding", "gzip, deflate, br"));
+    }
+
+    @Benchmark
+    public String jsonArray() {
+        JSONArray objArray = new JSONArray();
+        for (int i = 0; i < entries; i++) {
+            JSONObject obj = new JSONObject();
+            obj.put("key", keys[i]);
+            obj.put("size", sizes[i] / 1024);
+            objArray.put(obj);
+        }
+        return objArray.toString();
+    }
+
+    @Benchmark
+    public String jsonWriter() {
+        StringBuilder out = new StringBuilder(entries * 48);
+        JSONWriter writer = new JSONWriter(out);
+        writer.array();
+        for (int i = 0; i < entries; i++) {
+            writer.object();
+            writer.key("key").value(keys[i]);
+            writer.key("size").value(sizes[i] / 1024);
+            writer.endObject();
+        }
+        writer.endArray();
+        return out.toString();
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent gzipResponse() {
+        return JsonResponses.json(gzipRequest, 200, listing, Map.of());
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent plainResponse() {
+        return JsonResponses.json(null, 200, listing, Map.of());
+    }
+}
@@ -0,0 +1,158 @@
+package vgu.cloud26;
+
+import java.net.URI;
+import java.time.Duration;
+
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.LambdaClientBuilder;
+import software.amazon.awssdk.services.rds.RdsUtilities;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+// Gemeinsame SDK-Clients für alle Lambdas.
+// Jeder Client wird erst beim ersten Zugriff gebaut und lebt dann so lange wie der Container,
+// damit warme Aufrufe die offenen TLS-Verbindungen aus dem Pool wiederverwenden.
+public final class AwsClients {
+
+    public static final Region REGION = Region.of(Config.get(Config.REGION, Region.AP_SOUTHEAST_2.id()));
+
+    private static final int MAX_CONNECTIONS = 50;
+    private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration SOCKET_TIMEOUT = Duration.ofSeconds(30);
+    // Kürzer als das Idle-Timeout auf AWS-Seite, damit nach einem eingefrorenen Container
+    // keine toten Verbindungen aus dem Pool kommen
+    private static final Duration CONNECTION_MAX_IDLE = Duration.ofSeconds(20);
+
+    private AwsClients() {
+    }
+
+    public static S3Client s3() {
+        return S3Holder.CLIENT;
+    }
+
+    // Signiert lokal, ohne HTTP-Aufruf
+    public static S3Presigner s3Presigner() {
+        return PresignerHolder.PRESIGNER;
+    }
+
+    public static LambdaClient lambda() {
+        return LambdaHolder.CLIENT;
+    }
+
+    public static RdsUtilities rdsUtilities() {
+        return RdsHolder.UTILITIES;
+    }
+
+    // ===== Lazy holders (JVM class init is thread-safe and runs once) =====
+    private static final class HttpHolder {
+        static final SdkHttpClient CLIENT = ApacheHttpClient.builder()
+                .maxConnections(MAX_CONNECTIONS)
+                .connectionTimeout(CONNECTION_TIMEOUT)
+                .socketTimeout(SOCKET_TIMEOUT)
+                .connectionMaxIdleTime(CONNECTION_MAX_IDLE)
+                .tcpKeepAlive(true)
+                .build();
+    }
+
+    // Jeder SDK-Aufruf als eigene Metrics-Stufe, z.B. S3GetObject, S3PutObject, LambdaInvoke.
+    // Gemessen bis zur Antwort; bei GetObject als Stream ohne das Lesen des Bodys (siehe Metrics.S3_READ_BODY).
+    private static final ClientOverrideConfiguration TIMED = ClientOverrideConfiguration.builder()
+            .addExecutionInterceptor(new StageTimer())
+            .build();
+
+    private static final class StageTimer implements ExecutionInterceptor {
+        private static final ExecutionAttribute<Long> START = new ExecutionAttribute<>("cloud26.stageStart");
+
+        @Override
+        public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+            attributes.putAttribute(START, System.nanoTime());
+        }
+
+        @Override
+        public void afterExecution(Context.AfterExecution context, ExecutionAttributes attributes) {
+            record(attributes);
+        }
+
+        @Override
+        public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attributes) {
+            record(attributes);
+        }
+
+        private static void record(ExecutionAttributes attributes) {
+            Long start = attributes.getAttribute(START);
+            if (start != null) {
+                Metrics.record(attributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME)
+                        + attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME), start);
+            }
+        }
+    }
+
+    private static final class S3Holder {
+        static final S3Client CLIENT = build();
+
+        private static S3Client build() {
+            S3ClientBuilder builder = S3Client.builder()
+                    .region(REGION)
+                    .httpClient(HttpHolder.CLIENT)
+                    .overrideConfiguration(TIMED);
+            String endpoint = Config.get(Config.S3_ENDPOINT);
+            if (endpoint != null) {
+                // S3-kompatible Stand-ins kennen weder virtuelle Hosts noch die neuen Default-Checksummen
+                builder.endpointOverride(URI.create(endpoint))
+                        .forcePathStyle(true)
+                        .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                        .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED);
+            }
+            return builder.build();
+        }
+    }
+
+    private static final class PresignerHolder {
+        static final S3Presigner PRESIGNER = build();
+
+        private static S3Presigner build() {
+            S3Presigner.Builder builder = S3Presigner.builder().region(REGION);
+            String endpoint = Config.get(Config.S3_ENDPOINT);
+            if (endpoint != null) {
+                builder.endpointOverride(URI.create(endpoint))
+                        .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+            }
+            return builder.build();
+        }
+    }
+
+    private static final class LambdaHolder {
+        static final LambdaClient CLIENT = build();
+
+        private static LambdaClient build() {
+            LambdaClientBuilder builder = LambdaClient.builder()
+                    .region(REGION)
+                    .httpClient(HttpHolder.CLIENT)
+                    .overrideConfiguration(TIMED);
+            String endpoint = Config.get(Config.LAMBDA_ENDPOINT);
+            if (endpoint != null) {
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            return builder.build();
+        }
+    }
+
+    private static final class RdsHolder {
+        static final RdsUtilities UTILITIES = RdsUtilities.builder()
+                .region(REGION)
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package vgu.cloud26;
+
+// Überschreibbare Einstellungen: System-Property vor Umgebungsvariable vor dem Default im Code.
+// In AWS ist nichts davon gesetzt, dann gelten die bisherigen Konstanten.
+// Der Lasttest (LambdaLoadTest) biegt damit S3, Lambda und die Datenbank auf lokale Stand-ins um.
+public final class Config {
+
+    public static final String REGION = "CLOUD26_REGION";
+    // z.B. http://localhost:9000 - S3 dann mit Path-Style-Adressen und Checksummen nur wo nötig
+    public static final String S3_ENDPOINT = "CLOUD26_S3_ENDPOINT";
+    public static final String LAMBDA_ENDPOINT = "CLOUD26_LAMBDA_ENDPOINT";
+
+    public static final String ORIGINAL_BUCKET = "CLOUD26_ORIGINAL_BUCKET";
+    public static final String RESIZED_BUCKET = "CLOUD26_RESIZED_BUCKET";
+
+    // Mit DB_PASSWORD wird statt IAM-Token ein festes Passwort benutzt (lokale DB ohne RDS)
+    public static final String JDBC_URL = "CLOUD26_JDBC_URL";
+    public static final String DB_USER = "CLOUD26_DB_USER";
+    public static final String DB_PASSWORD = "CLOUD26_DB_PASSWORD";
+
+    private Config() {
+    }
+
+    public static String get(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(name);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public static String get(String name) {
+        return get(name, null);
+    }
+
+    public static String originalBucket() {
+        return get(ORIGINAL_BUCKET, "lmitu16");
+    }
+
+    public static String resizedBucket() {
+        return get(RESIZED_BUCKET, "myresizedimagesbucket");
+    }
+}
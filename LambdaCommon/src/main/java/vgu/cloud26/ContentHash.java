@@ -0,0 +1,32 @@
+package vgu.cloud26;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// SHA-256 der dekodierten Bytes als Hex (64 Zeichen) - Schlüssel für Photos.ContentHash
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(byte[] bytes) {
+        return Metrics.time(Metrics.CONTENT_HASH, () -> hex(sha256().digest(bytes)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Jede JVM muss SHA-256 anbieten
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder out = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package vgu.cloud26;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+
+// Encoder-Stufe für Thumbnails/Renditions: JPEG mit einstellbarer Qualität/Progressive, PNG nur für Bilder mit Alpha.
+// Die ImageWriter werden einmal pro Container geholt und über warme Aufrufe wiederverwendet.
+public final class ImageEncoder {
+
+    public static final String JPG_TYPE = "jpg";
+    public static final String JPG_MIME = "image/jpeg";
+    public static final String PNG_TYPE = "png";
+    public static final String PNG_MIME = "image/png";
+
+    // 0.75 ist der ImageIO-Default; mit optimierten Huffman-Tabellen und Progressive wird es bei gleicher Qualität kleiner
+    private static final float DEFAULT_JPEG_QUALITY = 0.75f;
+    private static final boolean DEFAULT_JPEG_PROGRESSIVE = true;
+
+    private final float jpegQuality;
+    private final boolean jpegProgressive;
+
+    private ImageWriter jpegWriter;
+    private ImageWriter pngWriter;
+
+    public ImageEncoder(float jpegQuality, boolean jpegProgressive) {
+        this.jpegQuality = jpegQuality;
+        this.jpegProgressive = jpegProgressive;
+    }
+
+    // JPEG_QUALITY (0.0-1.0) und JPEG_PROGRESSIVE (true/false) aus der Lambda-Konfiguration
+    public static ImageEncoder fromEnvironment() {
+        float quality = DEFAULT_JPEG_QUALITY;
+        String qualityEnv = System.getenv("JPEG_QUALITY");
+        if (qualityEnv != null) {
+            try {
+                quality = Math.max(0f, Math.min(1f, Float.parseFloat(qualityEnv.trim())));
+            } catch (NumberFormatException e) {
+                // Default behalten
+            }
+        }
+        String progressiveEnv = System.getenv("JPEG_PROGRESSIVE");
+        boolean progressive = progressiveEnv == null ? DEFAULT_JPEG_PROGRESSIVE : Boolean.parseBoolean(progressiveEnv.trim());
+        return new ImageEncoder(quality, progressive);
+    }
+
+    // PNG mit Transparenz bleibt PNG, alles andere wird JPEG (für Fotos deutlich kleiner)
+    public static String outputFormat(String sourceFormat, boolean hasAlpha) {
+        return hasAlpha && PNG_TYPE.equalsIgnoreCase(sourceFormat) ? PNG_TYPE : JPG_TYPE;
+    }
+
+    // Landet in den Metadaten der Thumbnails: andere Einstellungen -> vorhandenes Thumbnail ist veraltet
+    public String settings() {
+        return "q=" + jpegQuality + ";progressive=" + jpegProgressive;
+    }
+
+    public static String mimeType(String format) {
+        return PNG_TYPE.equals(format) ? PNG_MIME : JPG_MIME;
+    }
+
+    public synchronized byte[] encode(BufferedImage image, String format) throws IOException {
+        boolean png = PNG_TYPE.equals(format);
+        ImageWriter writer = png ? pngWriter() : jpegWriter();
+        ImageWriteParam param = png ? pngParam(writer) : jpegParam(writer);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(estimateSize(image, png));
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+        return buffer.toByteArray();
+    }
+
+    private ImageWriteParam jpegParam(ImageWriter writer) {
+        JPEGImageWriteParam param = (JPEGImageWriteParam) writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+        param.setOptimizeHuffmanTables(true);
+        param.setProgressiveMode(jpegProgressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        return param;
+    }
+
+    private ImageWriteParam pngParam(ImageWriter writer) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            // Qualität 0 = stärkste Deflate-Stufe; Thumbnails sind klein, die CPU-Zeit fällt kaum ins Gewicht
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0f);
+        }
+        return param;
+    }
+
+    private ImageWriter jpegWriter() {
+        if (jpegWriter == null) {
+            jpegWriter = ImageIO.getImageWritersByFormatName(JPG_TYPE).next();
+        }
+        return jpegWriter;
+    }
+
+    private ImageWriter pngWriter() {
+        if (pngWriter == null) {
+            pngWriter = ImageIO.getImageWritersByFormatName(PNG_TYPE).next();
+        }
+        return pngWriter;
+    }
+
+    // Grobe Schätzung, damit der Puffer nicht mehrfach umkopiert werden muss:
+    // JPEG ~2 Bit pro Pixel, PNG mit Alpha ~2 Byte pro Pixel
+    private static int estimateSize(BufferedImage image, boolean png) {
+        long pixels = (long) image.getWidth() * image.getHeight();
+        long estimate = png ? pixels * 2 : pixels / 4;
+        return (int) Math.min(Math.max(estimate, 8 * 1024), 32 * 1024 * 1024);
+    }
+}
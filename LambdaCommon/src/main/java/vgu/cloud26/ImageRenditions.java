@@ -0,0 +1,307 @@
+package vgu.cloud26;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+// Decode -> Resize -> Encode für alle Thumbnail-Größen aus einem einzigen Decode.
+// Genutzt vom LambdaResizer (Quelle aus S3) und vom fused Upload im LambdaResizeOrchestrator (Quelle im Speicher).
+public final class ImageRenditions {
+
+    public static final float MAX_DIMENSION = 300; // Etwas größer als 100, damit man was erkennt
+
+    // Größen per Umgebungsvariable, z.B. RENDITION_SIZES=150,300,800,1600; "sizes" pro Aufruf wählt nur
+    // daraus aus. Welche Größen ein Bild hat, wird nirgends gespeichert: Löschen und Teilen (SharedContent)
+    // gehen von den konfigurierten Größen aus, andere würden in S3 liegen bleiben.
+    // Die MAX_DIMENSION-Größe landet unter dstKey, alle anderen unter w<Größe>/dstKey.
+    private static final String RENDITION_SIZES_ENV = "RENDITION_SIZES";
+
+    // Beim Dekodieren mindestens so viele Pixel behalten wie 2x die größte Zielgröße,
+    // damit das bilineare Verkleinern danach nicht pixelig wird
+    private static final int DECODE_HEADROOM = 2;
+
+    // Metadaten jeder Rendition in S3 (x-amz-meta-*): ETag des Originals und Parameter, mit denen sie
+    // gerechnet wurde. Passen beide noch, kann der LambdaResizer sich Download, Decode und Upload sparen.
+    public static final String META_SOURCE_ETAG = "source-etag";
+    public static final String META_PARAMS = "resize-params";
+    public static final String META_SOURCE_WIDTH = "source-width";
+    public static final String META_SOURCE_HEIGHT = "source-height";
+    // Hochzählen, wenn sich Resize/Encode so ändern, dass alte Thumbnails neu gerechnet werden sollen
+    private static final int RENDITION_VERSION = 1;
+
+    static {
+        // Kein Temp-File-Cache für ImageInputStreams, /tmp ist langsamer als der Heap
+        ImageIO.setUseCache(false);
+    }
+
+    private ImageRenditions() {
+    }
+
+    // Rechnet alle Größen von groß nach klein und übergibt jede fertig kodierte Rendition sofort an den Consumer,
+    // damit der Upload schon läuft, während die nächste Größe gerechnet wird.
+    // false, wenn die Quelle kein lesbares Bild ist.
+    public static boolean render(InputStream in, List<Integer> sizes, String dstKey,
+            ImageEncoder encoder, Consumer<Rendition> consumer) throws IOException {
+
+        SourceImage source = Metrics.time(Metrics.IMAGE_DECODE, () -> readImage(in, sizes.get(0)));
+        if (source == null) {
+            return false;
+        }
+        BufferedImage srcImage = source.image;
+
+        // PNG mit Transparenz bleibt PNG, alles andere wird JPEG
+        String format = ImageEncoder.outputFormat(source.format, srcImage.getColorModel().hasAlpha());
+        boolean keepAlpha = ImageEncoder.PNG_TYPE.equals(format);
+        String contentType = ImageEncoder.mimeType(format);
+
+        int srcLongestSide = Math.max(srcImage.getWidth(), srcImage.getHeight());
+        BufferedImage previous = srcImage;
+        Rendition last = null;
+        for (int size : sizes) {
+            // Größen ab der Quellgröße ergeben alle dasselbe Bild in Originalgröße (kein Hochskalieren):
+            // einmal rechnen und kodieren, die Bytes für die weiteren Keys wiederverwenden
+            if (last != null && size >= srcLongestSide) {
+                last = new Rendition(renditionKey(dstKey, size), size, last.width, last.height, format, contentType,
+                        last.content, source.width, source.height);
+                consumer.accept(last);
+                continue;
+            }
+
+            BufferedImage larger = previous;
+            BufferedImage newImage = Metrics.time(Metrics.IMAGE_RESIZE, () -> resizeImage(larger, size, keepAlpha));
+            // Nur verkleinerte Zwischenstufen weiterverwenden
+            if (newImage.getWidth() < previous.getWidth()) {
+                previous = newImage;
+            }
+
+            byte[] encoded = Metrics.time(Metrics.IMAGE_ENCODE, () -> encoder.encode(newImage, format));
+            last = new Rendition(renditionKey(dstKey, size), size,
+                    newImage.getWidth(), newImage.getHeight(), format, contentType, encoded,
+                    source.width, source.height);
+            consumer.accept(last);
+        }
+        return true;
+    }
+
+    // Absteigend sortiert und ohne Duplikate; ohne Angabe alle konfigurierten Größen (Standard: nur
+    // MAX_DIMENSION wie bisher). Nicht konfigurierte Größen in "sizes" fallen weg, siehe unsupportedSizes.
+    public static List<Integer> parseSizes(Object sizesParam) {
+        List<Integer> configured = configuredSizes();
+        if (!(sizesParam instanceof List)) {
+            return configured;
+        }
+        TreeSet<Integer> sizes = requestedSizes(sizesParam);
+        sizes.retainAll(configured);
+        return sizes.isEmpty() ? configured : new ArrayList<>(sizes);
+    }
+
+    // Angefragte Größen, die nicht in RENDITION_SIZES stehen - Eingänge lehnen solche Anfragen ab
+    public static List<Integer> unsupportedSizes(Object sizesParam) {
+        if (!(sizesParam instanceof List)) {
+            return List.of();
+        }
+        TreeSet<Integer> sizes = requestedSizes(sizesParam);
+        sizes.removeAll(configuredSizes());
+        return new ArrayList<>(sizes);
+    }
+
+    private static List<Integer> configuredSizes() {
+        TreeSet<Integer> sizes = new TreeSet<>((a, b) -> Integer.compare(b, a));
+        if (System.getenv(RENDITION_SIZES_ENV) != null) {
+            for (String size : System.getenv(RENDITION_SIZES_ENV).split(",")) {
+                addSize(sizes, size);
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add((int) MAX_DIMENSION);
+        }
+        return new ArrayList<>(sizes);
+    }
+
+    private static TreeSet<Integer> requestedSizes(Object sizesParam) {
+        TreeSet<Integer> sizes = new TreeSet<>((a, b) -> Integer.compare(b, a));
+        for (Object size : (List<?>) sizesParam) {
+            addSize(sizes, String.valueOf(size));
+        }
+        return sizes;
+    }
+
+    private static void addSize(TreeSet<Integer> sizes, String value) {
+        try {
+            int size = (int) Double.parseDouble(value.trim());
+            if (size > 0) {
+                sizes.add(size);
+            }
+        } catch (NumberFormatException e) {
+            // ungültige Größe ignorieren
+        }
+    }
+
+    public static String params(int size, ImageEncoder encoder) {
+        return "v=" + RENDITION_VERSION + ";size=" + size + ";" + encoder.settings();
+    }
+
+    public static Map<String, String> metadata(Rendition rendition, String sourceEtag, ImageEncoder encoder) {
+        return Map.of(
+                META_SOURCE_ETAG, sourceEtag,
+                META_PARAMS, params(rendition.size, encoder),
+                META_SOURCE_WIDTH, String.valueOf(rendition.sourceWidth),
+                META_SOURCE_HEIGHT, String.valueOf(rendition.sourceHeight));
+    }
+
+    // S3 liefert ETags in Anführungszeichen, source-etag speichert sie ohne
+    public static String unquoteEtag(String etag) {
+        if (etag == null) {
+            return null;
+        }
+        return etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")
+                ? etag.substring(1, etag.length() - 1) : etag;
+    }
+
+    // Rendition aus demselben Original (ETag) mit denselben Parametern?
+    public static boolean isFresh(Map<String, String> metadata, String sourceEtag, int size, ImageEncoder encoder) {
+        return sourceEtag != null
+                && sourceEtag.equals(metadata.get(META_SOURCE_ETAG))
+                && params(size, encoder).equals(metadata.get(META_PARAMS));
+    }
+
+    // Größe, deren Rendition als Thumbnail in Photos steht (gleiche Wahl wie pickThumbnail)
+    public static int thumbnailSize(List<Integer> sizes) {
+        return sizes.contains((int) MAX_DIMENSION) ? (int) MAX_DIMENSION : sizes.get(sizes.size() - 1);
+    }
+
+    public static String renditionKey(String dstKey, int size) {
+        return size == (int) MAX_DIMENSION ? dstKey : "w" + size + "/" + dstKey;
+    }
+
+    // Alle Keys, unter denen Renditions von dstKey liegen können (z.B. zum Löschen)
+    public static List<String> renditionKeys(String dstKey, List<Integer> sizes) {
+        List<String> keys = new ArrayList<>(sizes.size());
+        for (int size : sizes) {
+            keys.add(renditionKey(dstKey, size));
+        }
+        return keys;
+    }
+
+    // Welche Rendition als Thumbnail in Photos eingetragen wird: die MAX_DIMENSION-Größe, sonst die kleinste.
+    // Renditions kommen absteigend, daher reicht der Vergleich mit der bisherigen Wahl.
+    public static Rendition pickThumbnail(Rendition current, Rendition next) {
+        if (current == null || current.size != (int) MAX_DIMENSION) {
+            return next;
+        }
+        return current;
+    }
+
+    // Liest die Abmessungen aus dem Header und dekodiert mit Subsampling:
+    // ein 48MP-Foto wird so nie als volles Raster (~200MB) im Heap gehalten.
+    // Kein Source-Region-Crop, die Renditions zeigen immer das ganze Bild.
+    static SourceImage readImage(InputStream in, int maxDimension) throws IOException {
+        try (ImageInputStream imageStream = ImageIO.createImageInputStream(in)) {
+            if (imageStream == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageStream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = subsamplingFor(width, height, maxDimension);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return new SourceImage(reader.read(0, param), reader.getFormatName(), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static int subsamplingFor(int width, int height, int maxDimension) {
+        int longestSide = Math.max(width, height);
+        return Math.max(1, longestSide / (DECODE_HEADROOM * maxDimension));
+    }
+
+    // Nur verkleinern: ist die Quelle kleiner als maxDimension, bleibt sie in Originalgröße
+    // (hochskalierte Renditions wären nur größer und unscharf)
+    public static BufferedImage resizeImage(BufferedImage srcImage, float maxDimension, boolean keepAlpha) {
+        int srcWidth = srcImage.getWidth();
+        int srcHeight = srcImage.getHeight();
+        float scalingFactor = Math.min(1f, Math.min(maxDimension / srcWidth, maxDimension / srcHeight));
+        int width = (int) (scalingFactor * srcWidth);
+        int height = (int) (scalingFactor * srcHeight);
+
+        BufferedImage resizedImage = new BufferedImage(width, height,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resizedImage.createGraphics();
+        if (!keepAlpha) {
+            // JPEG kennt keine Transparenz: auf Weiß statt Schwarz flachrechnen
+            graphics.setPaint(Color.white);
+            graphics.fillRect(0, 0, width, height);
+        }
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(srcImage, 0, 0, width, height, null);
+        graphics.dispose();
+        return resizedImage;
+    }
+
+    // Eine fertig kodierte Größe, bereit für den Upload
+    public static class Rendition {
+        public final String key;
+        public final int size;
+        public final int width;
+        public final int height;
+        public final String format;
+        public final String contentType;
+        public final byte[] content;
+        // Abmessungen des Originals laut Header (vor dem Subsampling)
+        public final int sourceWidth;
+        public final int sourceHeight;
+
+        Rendition(String key, int size, int width, int height, String format, String contentType, byte[] content,
+                int sourceWidth, int sourceHeight) {
+            this.key = key;
+            this.size = size;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.contentType = contentType;
+            this.content = content;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+    }
+
+    static class SourceImage {
+        final BufferedImage image;
+        final String format;
+        final int width;
+        final int height;
+
+        SourceImage(BufferedImage image, String format, int width, int height) {
+            this.image = image;
+            this.format = format;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
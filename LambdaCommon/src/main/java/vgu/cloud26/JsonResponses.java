@@ -0,0 +1,115 @@
+package vgu.cloud26;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+// JSON-Antworten mit gzip/deflate je nach Accept-Encoding des Clients.
+// Komprimierte Bodies gehen base64 + isBase64Encoded raus, die Function URL liefert sie binär aus.
+public final class JsonResponses {
+
+    // Darunter lohnt sich Komprimieren nicht (Header + Base64 fressen die Ersparnis)
+    public static final int MIN_COMPRESS_SIZE = 1024;
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    private JsonResponses() {
+    }
+
+    public static APIGatewayProxyResponseEvent json(APIGatewayProxyRequestEvent request, int statusCode,
+            String body, Map<String, String> headers) {
+        Map<String, String> allHeaders = new HashMap<>(headers);
+        allHeaders.put("Content-Type", "application/json");
+        // Caches dürfen die Antwort nur für dieselbe Accept-Encoding wiederverwenden
+        allHeaders.put("Vary", "Accept-Encoding");
+
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withHeaders(allHeaders);
+
+        byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        String encoding = raw.length >= MIN_COMPRESS_SIZE ? negotiate(header(request, "Accept-Encoding")) : null;
+        if (encoding == null) {
+            return response.withBody(body).withIsBase64Encoded(false);
+        }
+
+        allHeaders.put("Content-Encoding", encoding);
+        return response
+                .withBody(Base64.getEncoder().encodeToString(compress(raw, encoding)))
+                .withIsBase64Encoded(true);
+    }
+
+    // Höchster q-Wert gewinnt, bei Gleichstand gzip; q=0 heißt "nicht erlaubt"
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals(DEFLATE)) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static byte[] compress(byte[] raw, String encoding) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (OutputStream out = GZIP.equals(encoding)
+                ? new GZIPOutputStream(buffer, 8192)
+                : new DeflaterOutputStream(buffer)) {
+            out.write(raw);
+        } catch (IOException e) {
+            // ByteArrayOutputStream wirft nicht
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String header(APIGatewayProxyRequestEvent request, String name) {
+        Map<String, String> headers = request == null ? null : request.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,163 @@
+package vgu.cloud26;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+// Dauer der einzelnen Stufen eines Aufrufs (S3, Base64, ImageIO, Token, JDBC, Lambda-Invoke) als
+// CloudWatch Embedded Metric Format: eine JSON-Zeile pro Aufruf, CloudWatch macht daraus Metriken
+// mit den Dimensionen FunctionName und StartType (cold/warm).
+//
+// Lambda bearbeitet pro Container nur einen Aufruf gleichzeitig, daher hängt der laufende Aufruf
+// statisch am Container (current). So können auch AwsClients, RdsConnectionProvider, ImageRenditions
+// und die Worker-Threads der Pools messen, ohne dass ein Metrics-Objekt durchgereicht wird.
+// Ohne laufenden Aufruf (Benchmarks, Tests) wird nur ausgeführt, nicht gemessen.
+//
+// Stufen in parallelen Pools werden summiert, die Summe kann daher größer als TotalMs sein.
+public final class Metrics {
+
+    // Stufen-Namen (Metrik = Name + "Ms"); S3- und Lambda-Aufrufe heißen nach der SDK-Operation, z.B. S3PutObject
+    public static final String BASE64_DECODE = "Base64Decode";
+    public static final String BASE64_ENCODE = "Base64Encode";
+    public static final String IMAGE_DECODE = "ImageDecode";
+    public static final String IMAGE_RESIZE = "ImageResize";
+    public static final String IMAGE_ENCODE = "ImageEncode";
+    public static final String RDS_TOKEN = "RdsToken";
+    public static final String JDBC_CONNECT = "JdbcConnect";
+    public static final String JDBC_QUERY = "JdbcQuery";
+    public static final String S3_READ_BODY = "S3ReadBody";
+    public static final String CONTENT_HASH = "ContentHash";
+
+    // METRICS_NAMESPACE (cloud26), METRICS_ENABLED=false schaltet die Ausgabe ab
+    private static final String NAMESPACE = envOrDefault("METRICS_NAMESPACE", "cloud26");
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("METRICS_ENABLED"));
+
+    private static final AtomicBoolean COLD = new AtomicBoolean(true);
+    private static volatile Metrics current;
+
+    private final LambdaLogger logger;
+    private final String functionName;
+    private final String requestId;
+    private final String traceId;
+    private final boolean coldStart;
+    private final long startNanos = System.nanoTime();
+    // Stufe -> {Summe in Nanosekunden, Anzahl}
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+    private boolean flushed;
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private Metrics(Context context) {
+        this.logger = context.getLogger();
+        this.functionName = context.getFunctionName();
+        this.requestId = context.getAwsRequestId();
+        this.traceId = Trace.currentTraceId();
+        this.coldStart = COLD.getAndSet(false);
+    }
+
+    // Am Anfang von handleRequest (nach Trace.begin), flush() im finally
+    public static Metrics begin(Context context) {
+        Metrics metrics = new Metrics(context);
+        current = metrics;
+        return metrics;
+    }
+
+    public static <T, E extends Exception> T time(String stage, Stage<T, E> work) throws E {
+        long start = System.nanoTime();
+        try {
+            return work.run();
+        } finally {
+            record(stage, start);
+        }
+    }
+
+    // Für Stufen, die sich nicht als Lambda schreiben lassen (z.B. SDK-Interceptor)
+    public static void record(String stage, long startNanos) {
+        Metrics metrics = current;
+        if (metrics != null) {
+            metrics.add(stage, System.nanoTime() - startNanos);
+        }
+    }
+
+    private synchronized void add(String stage, long nanos) {
+        // Nachzügler aus Pools nach dem Ende des Aufrufs gehören zu keinem Datensatz mehr
+        if (flushed) {
+            return;
+        }
+        long[] total = stages.computeIfAbsent(stage, s -> new long[2]);
+        total[0] += nanos;
+        total[1]++;
+    }
+
+    public void flush() {
+        long totalNanos = System.nanoTime() - startNanos;
+        if (current == this) {
+            current = null;
+        }
+        String line;
+        synchronized (this) {
+            if (flushed) {
+                return;
+            }
+            flushed = true;
+            if (!ENABLED || logger == null) {
+                return;
+            }
+            line = toEmf(totalNanos);
+        }
+        logger.log(line);
+    }
+
+    private String toEmf(long totalNanos) {
+        StringBuilder definitions = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        appendMetric(definitions, values, "TotalMs", totalNanos / 1_000_000.0);
+        for (Map.Entry<String, long[]> stage : stages.entrySet()) {
+            appendMetric(definitions, values, stage.getKey() + "Ms", stage.getValue()[0] / 1_000_000.0);
+            values.append(",\"").append(stage.getKey()).append("Count\":").append(stage.getValue()[1]);
+        }
+
+        return "{\"_aws\":{\"Timestamp\":" + System.currentTimeMillis()
+                + ",\"CloudWatchMetrics\":[{\"Namespace\":" + quote(NAMESPACE)
+                + ",\"Dimensions\":[[\"FunctionName\",\"StartType\"]]"
+                + ",\"Metrics\":[" + definitions + "]}]}"
+                + ",\"FunctionName\":" + quote(functionName == null ? "unknown" : functionName)
+                + ",\"StartType\":\"" + (coldStart ? "cold" : "warm") + "\""
+                + ",\"RequestId\":" + quote(requestId == null ? "" : requestId)
+                + (traceId == null ? "" : ",\"TraceId\":" + quote(traceId))
+                + values + "}";
+    }
+
+    private static void appendMetric(StringBuilder definitions, StringBuilder values, String name, double millis) {
+        if (definitions.length() > 0) {
+            definitions.append(',');
+        }
+        definitions.append("{\"Name\":\"").append(name).append("\",\"Unit\":\"Milliseconds\"}");
+        values.append(",\"").append(name).append("\":").append(Math.round(millis * 1000) / 1000.0);
+    }
+
+    private static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static String envOrDefault(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? fallback : value;
+    }
+}
@@ -0,0 +1,33 @@
+package vgu.cloud26;
+
+// Content-Type aus der Dateiendung, für Uploads ohne Angabe vom Client
+public final class MimeTypes {
+
+    private MimeTypes() {
+    }
+
+    public static String forKey(String key) {
+        int dot = key == null ? -1 : key.lastIndexOf('.');
+        String extension = dot < 0 ? "" : key.substring(dot + 1).toLowerCase();
+        switch (extension) {
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "png":
+                return "image/png";
+            case "gif":
+                return "image/gif";
+            case "bmp":
+                return "image/bmp";
+            case "webp":
+                return "image/webp";
+            case "tif":
+            case "tiff":
+                return "image/tiff";
+            case "html":
+                return "text/html";
+            default:
+                return "application/octet-stream";
+        }
+    }
+}
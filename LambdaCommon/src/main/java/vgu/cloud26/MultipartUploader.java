@@ -0,0 +1,148 @@
+package vgu.cloud26;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedUploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
+
+// Multipart-Upload großer Originale über presigned URLs (LambdaPresignUrl): die Lambda legt den Upload an,
+// signiert jeden Teil und schließt ab, die Bytes gehen parallel vom Client direkt nach S3.
+// Durch eine Lambda (LambdaUploadObject) lohnt sich Multipart nicht: Requests über Function URL/API Gateway
+// sind auf 6 MB begrenzt, nach Base64 bleiben gut 4 MB - weniger als die 5 MiB, die S3 pro Teil verlangt.
+public final class MultipartUploader {
+
+    // S3 verlangt mindestens 5 MiB pro Teil (außer dem letzten) und erlaubt höchstens 10000 Teile
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    public static final int MAX_PARTS = 10000;
+
+    private static final long MB = 1024L * 1024L;
+
+    private final S3Client s3Client;
+    private final S3Presigner presigner;
+    private final long threshold;
+    private final long partSize;
+
+    public MultipartUploader(S3Client s3Client, S3Presigner presigner, long threshold, long partSize) {
+        this.s3Client = s3Client;
+        this.presigner = presigner;
+        this.threshold = threshold;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+    }
+
+    // MULTIPART_THRESHOLD_MB (16), MULTIPART_PART_SIZE_MB (8)
+    public static MultipartUploader fromEnvironment(S3Client s3Client, S3Presigner presigner) {
+        return new MultipartUploader(s3Client, presigner,
+                envInt("MULTIPART_THRESHOLD_MB", 16) * MB,
+                envInt("MULTIPART_PART_SIZE_MB", 8) * MB);
+    }
+
+    public boolean shouldUse(long contentLength) {
+        return contentLength >= threshold;
+    }
+
+    // Teilgröße für diese Objektgröße: wächst, wenn die konfigurierte Größe mehr als MAX_PARTS Teile ergäbe
+    public long partSize(long size) {
+        long minimum = (size + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, (minimum + MB - 1) / MB * MB);
+    }
+
+    // Legt den Upload an und signiert eine PUT-URL pro Teil (Teil n = Bytes ab (n-1) x partSize).
+    // Der Client braucht den ETag aus jeder Teil-Antwort für complete (Bucket-CORS muss ETag freigeben).
+    public Started start(String bucket, String key, String contentType, long size, Duration ttl) {
+        long partSize = partSize(size);
+        int partCount = (int) Math.max(1, (size + partSize - 1) / partSize);
+
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+
+        try {
+            List<String> urls = new ArrayList<>(partCount);
+            Instant expiresAt = null;
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                PresignedUploadPartRequest presigned = presigner.presignUploadPart(UploadPartPresignRequest.builder()
+                        .signatureDuration(ttl)
+                        .uploadPartRequest(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .build())
+                        .build());
+                urls.add(presigned.url().toString());
+                expiresAt = presigned.expiration();
+            }
+            return new Started(uploadId, partSize, urls, expiresAt);
+        } catch (RuntimeException e) {
+            abort(bucket, key, uploadId);
+            throw e;
+        }
+    }
+
+    // etags: Teilnummer -> ETag aus der Antwort des Teil-PUTs
+    public CompleteMultipartUploadResponse complete(String bucket, String key, String uploadId,
+            Map<Integer, String> etags) {
+        List<CompletedPart> parts = new ArrayList<>(etags.size());
+        for (Map.Entry<Integer, String> part : new TreeMap<>(etags).entrySet()) {
+            parts.add(CompletedPart.builder().partNumber(part.getKey()).eTag(part.getValue()).build());
+        }
+        return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+    }
+
+    public void abort(String bucket, String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException ignored) {
+            // Lifecycle-Regel räumt unvollständige Uploads sonst später ab
+        }
+    }
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        try {
+            return value == null ? fallback : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // Angelegter Upload: ID, Teilgröße und eine URL pro Teil (Index 0 = Teil 1)
+    public static final class Started {
+        public final String uploadId;
+        public final long partSize;
+        public final List<String> partUrls;
+        public final Instant expiresAt;
+
+        Started(String uploadId, long partSize, List<String> partUrls, Instant expiresAt) {
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+            this.partUrls = partUrls;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package vgu.cloud26;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// SQL für die Photos-Tabelle an einer Stelle, damit Upload und Orchestrator dieselben Zeilen schreiben
+public final class PhotoStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO Photos (Description, S3Key, Email, SizeBytes, ContentType, ContentHash) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Key wird überschrieben: Hash, Abmessungen und Thumbnail älterer Zeilen beschreiben das alte Bild.
+    // Bis der Resizer updateImageInfo für den neuen Inhalt aufruft, taugt keine davon als Dedup-Ziel,
+    // sonst würde SharedContent.share die neuen Bytes unter den alten Hash kopieren.
+    // Duplikate liegen unter SharedContent-Keys, die kein Upload beschreibt, und sind davon nie betroffen.
+    private static final String INVALIDATE_SQL =
+            "UPDATE Photos SET ContentHash = NULL, Width = NULL, Height = NULL, ThumbnailKey = NULL WHERE S3Key = ?";
+
+    // Nur fertig verarbeitete Bilder (Thumbnail vorhanden) taugen als Ziel einer Deduplizierung
+    private static final String FIND_BY_HASH_SQL =
+            "SELECT ContentHash, S3Key, SizeBytes, ContentType, Width, Height, ThumbnailKey FROM Photos"
+            + " WHERE ContentHash IN (%s) AND ThumbnailKey IS NOT NULL";
+
+    // Zeile für bekannten Inhalt: alles außer Beschreibung und Email kommt vom vorhandenen Bild
+    private static final String INSERT_DUPLICATE_SQL =
+            "INSERT INTO Photos (Description, S3Key, Email, SizeBytes, ContentType, Width, Height, ThumbnailKey, ContentHash)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String EXISTS_SQL = "SELECT 1 FROM Photos WHERE S3Key = ? LIMIT 1";
+
+    // Löschen über die Zeile (ID) oder den Key; danach zählt, welche Keys noch eine Zeile haben
+    private static final String KEYS_BY_ID_SQL = "SELECT S3Key FROM Photos WHERE ID IN (%s)";
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM Photos WHERE ID IN (%s)";
+    private static final String DELETE_BY_KEY_SQL = "DELETE FROM Photos WHERE S3Key IN (%s)";
+    private static final String REFERENCED_KEYS_SQL = "SELECT DISTINCT S3Key FROM Photos WHERE S3Key IN (%s)";
+
+    // Nach dem Resize: Abmessungen des Originals und Key des Thumbnails für die Galerie
+    private static final String UPDATE_IMAGE_INFO_SQL =
+            "UPDATE Photos SET Width = ?, Height = ?, ThumbnailKey = ? WHERE S3Key = ?";
+
+    private PhotoStore() {
+    }
+
+    // contentHash null = unbekannt (z.B. Upload über presigned URL)
+    public static void insert(Connection connection, String description, String s3Key, String email,
+            long sizeBytes, String contentType, String contentHash) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(INVALIDATE_SQL);
+             PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            update.setString(1, s3Key);
+            Metrics.time(Metrics.JDBC_QUERY, update::executeUpdate);
+            bind(statement, new Row(description, s3Key, email, sizeBytes, contentType, contentHash));
+            statement.setString(6, contentHash);
+            Metrics.time(Metrics.JDBC_QUERY, statement::executeUpdate);
+        }
+    }
+
+    // Neuer Inhalt unter einem Key, der schon Zeilen hat (z.B. erneuter Upload über presigned URL)
+    public static void invalidate(Connection connection, String s3Key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INVALIDATE_SQL)) {
+            statement.setString(1, s3Key);
+            Metrics.time(Metrics.JDBC_QUERY, statement::executeUpdate);
+        }
+    }
+
+    public static boolean exists(Connection connection, String s3Key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(EXISTS_SQL)) {
+            statement.setString(1, s3Key);
+            try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, statement::executeQuery)) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Alle Zeilen in einem JDBC-Batch und einer Transaktion: entweder alle oder keine
+    public static void insertBatch(Connection connection, List<Row> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement update = connection.prepareStatement(INVALIDATE_SQL);
+             PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            for (Row row : rows) {
+                update.setString(1, row.s3Key);
+                update.addBatch();
+                bind(statement, row);
+                statement.setString(6, row.contentHash);
+                statement.addBatch();
+            }
+            Metrics.time(Metrics.JDBC_QUERY, () -> {
+                update.executeBatch();
+                statement.executeBatch();
+                connection.commit();
+                return null;
+            });
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // false, wenn es (noch) keine Zeile zum Key gibt
+    public static boolean updateImageInfo(Connection connection, String s3Key, int width, int height,
+            String thumbnailKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_IMAGE_INFO_SQL)) {
+            statement.setInt(1, width);
+            statement.setInt(2, height);
+            statement.setString(3, thumbnailKey);
+            statement.setString(4, s3Key);
+            return Metrics.time(Metrics.JDBC_QUERY, statement::executeUpdate) > 0;
+        }
+    }
+
+    // null, wenn der Inhalt unbekannt oder das vorhandene Bild noch nicht fertig ist
+    public static ContentMatch findByContentHash(Connection connection, String contentHash) throws SQLException {
+        return findByContentHashes(connection, List.of(contentHash)).get(contentHash);
+    }
+
+    // Ein Query für einen ganzen Batch; Hash -> vorhandenes Bild
+    public static Map<String, ContentMatch> findByContentHashes(Connection connection, Collection<String> contentHashes)
+            throws SQLException {
+        Map<String, ContentMatch> matches = new HashMap<>();
+        if (contentHashes.isEmpty()) {
+            return matches;
+        }
+        String placeholders = String.join(",", Collections.nCopies(contentHashes.size(), "?"));
+        try (PreparedStatement statement = connection.prepareStatement(String.format(FIND_BY_HASH_SQL, placeholders))) {
+            int index = 1;
+            for (String contentHash : contentHashes) {
+                statement.setString(index++, contentHash);
+            }
+            try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, statement::executeQuery)) {
+                while (rs.next()) {
+                    long sizeBytes = rs.getLong("SizeBytes");
+                    if (rs.wasNull()) {
+                        sizeBytes = -1;
+                    }
+                    ContentMatch match = new ContentMatch(
+                            rs.getString("ContentHash"),
+                            rs.getString("S3Key"),
+                            sizeBytes,
+                            rs.getString("ContentType"),
+                            rs.getInt("Width"),
+                            rs.getInt("Height"),
+                            rs.getString("ThumbnailKey"));
+                    // Schon geteilter Inhalt (Hash-Key) vor dem Key eines Nutzers: spart die Kopie
+                    ContentMatch current = matches.get(match.contentHash);
+                    if (current == null
+                            || (!SharedContent.isSharedKey(current.s3Key) && SharedContent.isSharedKey(match.s3Key))) {
+                        matches.put(match.contentHash, match);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Neue Zeile für bekannten Inhalt, zeigt auf Original und Thumbnail des vorhandenen Bildes
+    // (nach SharedContent.share unter dem Hash-Key). Liefert die ID der Zeile, darüber wird sie gelöscht.
+    public static long insertDuplicate(Connection connection, String description, String email, ContentMatch match)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_DUPLICATE_SQL,
+                Statement.RETURN_GENERATED_KEYS)) {
+            bind(statement, new Row(description, match.s3Key, email, match.sizeBytes, match.contentType,
+                    match.contentHash));
+            // Inhalt aus demselben Batch ist noch nicht verarbeitet: Abmessungen kommen mit dem Resize
+            if (match.thumbnailKey == null) {
+                statement.setNull(6, Types.INTEGER);
+                statement.setNull(7, Types.INTEGER);
+            } else {
+                statement.setInt(6, match.width);
+                statement.setInt(7, match.height);
+            }
+            statement.setString(8, match.thumbnailKey);
+            statement.setString(9, match.contentHash);
+            Metrics.time(Metrics.JDBC_QUERY, statement::executeUpdate);
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : -1;
+            }
+        }
+    }
+
+    // Löscht genau diese Zeilen; andere Zeilen mit demselben (geteilten) Key bleiben
+    public static Deletion deleteByIds(Connection connection, Collection<Long> ids) throws SQLException {
+        return delete(connection, ids, true);
+    }
+
+    // Löscht alle Zeilen zu den Keys (ein Key ohne Zeile ist trotzdem unreferenziert und darf weg)
+    public static Deletion deleteByS3Keys(Connection connection, Collection<String> s3Keys) throws SQLException {
+        return delete(connection, s3Keys, false);
+    }
+
+    // In einer Transaktion: betroffene Keys bestimmen, löschen, dann prüfen, welche Keys noch Zeilen haben
+    private static Deletion delete(Connection connection, Collection<?> values, boolean byId) throws SQLException {
+        if (values.isEmpty()) {
+            return new Deletion(0, List.of(), List.of());
+        }
+        String placeholders = String.join(",", Collections.nCopies(values.size(), "?"));
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            Set<String> keys = new LinkedHashSet<>();
+            if (byId) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        String.format(KEYS_BY_ID_SQL, placeholders))) {
+                    bindAll(statement, values);
+                    try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, statement::executeQuery)) {
+                        while (rs.next()) {
+                            keys.add(rs.getString("S3Key"));
+                        }
+                    }
+                }
+            } else {
+                for (Object value : values) {
+                    keys.add((String) value);
+                }
+            }
+
+            int rows;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    String.format(byId ? DELETE_BY_ID_SQL : DELETE_BY_KEY_SQL, placeholders))) {
+                bindAll(statement, values);
+                rows = Metrics.time(Metrics.JDBC_QUERY, statement::executeUpdate);
+            }
+
+            Set<String> unreferenced = new LinkedHashSet<>(keys);
+            if (!keys.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(String.format(REFERENCED_KEYS_SQL,
+                        String.join(",", Collections.nCopies(keys.size(), "?"))))) {
+                    bindAll(statement, keys);
+                    try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, statement::executeQuery)) {
+                        while (rs.next()) {
+                            unreferenced.remove(rs.getString("S3Key"));
+                        }
+                    }
+                }
+            }
+            connection.commit();
+            return new Deletion(rows, new ArrayList<>(keys), new ArrayList<>(unreferenced));
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void bindAll(PreparedStatement statement, Collection<?> values) throws SQLException {
+        int index = 1;
+        for (Object value : values) {
+            statement.setObject(index++, value);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Row row) throws SQLException {
+        statement.setString(1, row.description == null ? "" : row.description);
+        statement.setString(2, row.s3Key);     // S3Key ist der Dateiname
+        statement.setString(3, row.email == null ? "" : row.email);
+        if (row.sizeBytes >= 0) {
+            statement.setLong(4, row.sizeBytes);
+        } else {
+            statement.setNull(4, Types.BIGINT);
+        }
+        statement.setString(5, row.contentType);
+    }
+
+    public static final class Row {
+        public final String description;
+        public final String s3Key;
+        public final String email;
+        public final long sizeBytes;      // -1 = unbekannt
+        public final String contentType;
+        public final String contentHash;  // null = unbekannt
+
+        public Row(String description, String s3Key, String email, long sizeBytes, String contentType,
+                String contentHash) {
+            this.description = description;
+            this.s3Key = s3Key;
+            this.email = email;
+            this.sizeBytes = sizeBytes;
+            this.contentType = contentType;
+            this.contentHash = contentHash;
+        }
+    }
+
+    // Ergebnis eines Löschvorgangs: Keys der gelöschten Zeilen und die davon, auf die keine Zeile mehr zeigt
+    // (nur deren Original und Renditions dürfen aus S3 verschwinden)
+    public static final class Deletion {
+        public final int rows;
+        public final List<String> s3Keys;
+        public final List<String> unreferencedKeys;
+
+        Deletion(int rows, List<String> s3Keys, List<String> unreferencedKeys) {
+            this.rows = rows;
+            this.s3Keys = s3Keys;
+            this.unreferencedKeys = unreferencedKeys;
+        }
+    }
+
+    // Vorhandenes Bild mit demselben Inhalt
+    public static final class ContentMatch {
+        public final String contentHash;
+        public final String s3Key;
+        public final long sizeBytes;
+        public final String contentType;
+        public final int width;
+        public final int height;
+        public final String thumbnailKey;
+
+        ContentMatch(String contentHash, String s3Key, long sizeBytes, String contentType, int width, int height,
+                String thumbnailKey) {
+            this.contentHash = contentHash;
+            this.s3Key = s3Key;
+            this.sizeBytes = sizeBytes;
+            this.contentType = contentType;
+            this.width = width;
+            this.height = height;
+            this.thumbnailKey = thumbnailKey;
+        }
+
+        // Gerade hochgeladener Inhalt, noch ohne Thumbnail und Abmessungen (SharedContent.shareUploaded)
+        static ContentMatch unprocessed(String contentHash, String s3Key, long sizeBytes, String contentType) {
+            return new ContentMatch(contentHash, s3Key, sizeBytes, contentType, 0, 0, null);
+        }
+
+        // Derselbe Inhalt unter anderen Keys (SharedContent.share)
+        ContentMatch withKeys(String s3Key, String thumbnailKey) {
+            return new ContentMatch(contentHash, s3Key, sizeBytes, contentType, width, height, thumbnailKey);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package vgu.cloud26;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import software.amazon.awssdk.services.rds.model.GenerateAuthenticationTokenRequest;
+
+// Eine JDBC-Verbindung pro Container mit IAM-Auth.
+// Das Token wird für seine Lebensdauer gecacht und die Verbindung über warme Aufrufe gehalten;
+// ist sie inzwischen tot (Timeout, eingefrorener Container), wird transparent neu verbunden.
+// Die Verbindung gehört dem Provider: Aufrufer schließen nur Statements/ResultSets, nie die Connection.
+// Datenbankarbeit läuft über execute() oder read(): reißt die Verbindung ab, wird sie verworfen.
+// execute() wiederholt die Arbeit nur, wenn noch kein Statement zum Server ging - ob ein INSERT
+// vor dem Abbruch noch committet wurde, lässt sich nicht feststellen, und doppelt schreiben wäre schlimmer.
+// read() ist für reine Lesearbeit und wiederholt immer genau einmal auf einer neuen Verbindung.
+public final class RdsConnectionProvider {
+
+    // RDS IAM-Tokens sind 15 Minuten gültig, wir erneuern eine Minute früher
+    private static final long TOKEN_LIFETIME_MS = 14 * 60 * 1000L;
+    // isValid() kostet einen Roundtrip, direkt hintereinander genutzte Verbindungen prüfen wir nicht
+    private static final long VALIDATION_INTERVAL_MS = 5_000L;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    static {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            // Treiber wird dann über den ServiceLoader von DriverManager gefunden
+        }
+    }
+
+    private final String jdbcUrl;
+    private final String hostname;
+    private final int port;
+    private final String user;
+    // Nur lokal (Config.DB_PASSWORD): festes Passwort statt IAM-Token, keine MySQL-spezifischen Properties
+    private final String staticPassword;
+
+    private String cachedToken;
+    private long tokenExpiresAt;
+
+    private Connection connection;
+    // Zeitpunkt des letzten erfolgreichen isValid() bzw. des Verbindungsaufbaus
+    private long lastCheckedAt;
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Update {
+        void run(Connection connection) throws SQLException;
+    }
+
+    public RdsConnectionProvider(String jdbcUrl, String hostname, int port, String user) {
+        this.jdbcUrl = Config.get(Config.JDBC_URL, jdbcUrl);
+        this.hostname = hostname;
+        this.port = port;
+        this.user = Config.get(Config.DB_USER, user);
+        this.staticPassword = Config.get(Config.DB_PASSWORD);
+    }
+
+    public synchronized Connection getConnection() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (connection != null) {
+            // isClosed() ist lokal und billig; der Roundtrip von isValid() nur, wenn die letzte Prüfung
+            // zu lange her ist. Nur eine erfolgreiche Prüfung setzt das Intervall neu, sonst würde
+            // eine ständig genutzte Verbindung nie wieder geprüft.
+            if (!connection.isClosed() && (now - lastCheckedAt < VALIDATION_INTERVAL_MS || validate(now))) {
+                try {
+                    resetState(connection);
+                    return connection;
+                } catch (SQLException e) {
+                    // Rollback scheitert an einer toten Verbindung -> neu verbinden
+                }
+            }
+            closeQuietly();
+        }
+
+        Properties props = connectionProperties();
+        connection = Metrics.time(Metrics.JDBC_CONNECT, () -> DriverManager.getConnection(jdbcUrl, props));
+        lastCheckedAt = now;
+        return connection;
+    }
+
+    // Arbeit mit der gecachten Verbindung. Bei einem Verbindungsfehler wird neu verbunden; wiederholt wird
+    // nur, wenn der Versuch noch kein Statement ausgeführt hat (schreibende Arbeit ist nicht idempotent).
+    // Andere SQLExceptions (Syntax, Constraints, ...) gehen unverändert an den Aufrufer.
+    public <T> T execute(Work<T> work) throws SQLException {
+        return run(work, false);
+    }
+
+    // Nur lesende Arbeit: nach einem Verbindungsfehler immer einmal auf einer neuen Verbindung wiederholen
+    public <T> T read(Work<T> work) throws SQLException {
+        return run(work, true);
+    }
+
+    private <T> T run(Work<T> work, boolean idempotent) throws SQLException {
+        Connection current = getConnection();
+        boolean[] executed = new boolean[1];
+        try {
+            return work.run(idempotent ? current : tracking(current, executed));
+        } catch (SQLException e) {
+            if (!isConnectionFailure(e, current)) {
+                throw e;
+            }
+            invalidate(current);
+            if (executed[0]) {
+                throw e;
+            }
+            return work.run(getConnection());
+        }
+    }
+
+    public void executeUpdate(Update update) throws SQLException {
+        execute(connection -> {
+            update.run(connection);
+            return null;
+        });
+    }
+
+    // Verbindung verwerfen, z.B. nach einem Kommunikationsfehler mitten im Statement
+    public synchronized void invalidate() {
+        closeQuietly();
+    }
+
+    // Nur verwerfen, wenn nicht inzwischen schon eine neue Verbindung aufgebaut wurde
+    private synchronized void invalidate(Connection failed) {
+        if (connection == failed) {
+            closeQuietly();
+        }
+    }
+
+    // Verbindung, die vermerkt, sobald ein Statement ausgeführt (oder committet) wird
+    private static Connection tracking(Connection connection, boolean[] executed) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            if ("commit".equals(method.getName())) {
+                executed[0] = true;
+            }
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                return proxy(method.getReturnType(), statement, (statementMethod, statementArgs) -> {
+                    if (statementMethod.getName().startsWith("execute")) {
+                        executed[0] = true;
+                    }
+                    return invoke(statement, statementMethod, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object run(Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Object target, Call call) {
+        return (T) Proxy.newProxyInstance(RdsConnectionProvider.class.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> call.run(method, args));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean validate(long now) throws SQLException {
+        if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            return false;
+        }
+        lastCheckedAt = now;
+        return true;
+    }
+
+    // SQLState-Klasse 08 = Verbindungsfehler (Connector/J: 08S01 bei CommunicationsException)
+    private static boolean isConnectionFailure(SQLException e, Connection connection) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            String state = cur.getSQLState();
+            if ((state != null && state.startsWith("08"))
+                    || cur instanceof SQLNonTransientConnectionException
+                    || cur instanceof SQLTransientConnectionException
+                    || cur instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        try {
+            return connection.isClosed();
+        } catch (SQLException closedCheck) {
+            return true;
+        }
+    }
+
+    private Properties connectionProperties() {
+        Properties props = new Properties();
+        if (staticPassword != null) {
+            props.setProperty("user", user);
+            props.setProperty("password", staticPassword);
+            return props;
+        }
+        props.setProperty("useSSL", "true");
+        // JDBC-Batches als ein mehrzeiliges INSERT senden statt Zeile für Zeile
+        props.setProperty("rewriteBatchedStatements", "true");
+        props.setProperty("user", user);
+        props.setProperty("password", authToken());
+        return props;
+    }
+
+    private String authToken() {
+        long now = System.currentTimeMillis();
+        if (cachedToken == null || now >= tokenExpiresAt) {
+            cachedToken = Metrics.time(Metrics.RDS_TOKEN, () -> AwsClients.rdsUtilities().generateAuthenticationToken(
+                    GenerateAuthenticationTokenRequest.builder()
+                            .hostname(hostname)
+                            .port(port)
+                            .username(user)
+                            .build()));
+            tokenExpiresAt = now + TOKEN_LIFETIME_MS;
+        }
+        return cachedToken;
+    }
+
+    // Eine offene Transaktion aus einem abgebrochenen Aufruf darf nicht in den nächsten wandern
+    private static void resetState(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void closeQuietly() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Verbindung ist ohnehin unbrauchbar
+            }
+            connection = null;
+        }
+    }
+}
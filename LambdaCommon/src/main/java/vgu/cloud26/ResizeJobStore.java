@@ -0,0 +1,115 @@
+package vgu.cloud26;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+
+// Zugriff auf die Tabelle ResizeJobs (Schema: sql/resize_jobs.sql).
+// Orchestrator legt an und liest, LambdaResizer schreibt Start/Ende.
+public final class ResizeJobStore {
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private ResizeJobStore() {
+    }
+
+    public static void create(Connection connection, String jobId, String s3Key) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "INSERT INTO ResizeJobs (JobId, S3Key, Status) VALUES (?, ?, ?)")) {
+            st.setString(1, jobId);
+            st.setString(2, s3Key);
+            st.setString(3, STATUS_PENDING);
+            Metrics.time(Metrics.JDBC_QUERY, st::executeUpdate);
+        }
+    }
+
+    // false, wenn es die JobId schon gibt (Primärschlüssel), z.B. bei einem wiederholten complete
+    public static boolean createIfAbsent(Connection connection, String jobId, String s3Key) throws SQLException {
+        try {
+            create(connection, jobId, s3Key);
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false;
+        } catch (SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Setzt einen fehlgeschlagenen Job zurück auf pending; false, wenn er nicht (mehr) failed ist.
+    // Die Bedingung im UPDATE sorgt dafür, dass bei parallelen Aufrufen nur einer neu startet.
+    public static boolean restartFailed(Connection connection, String jobId) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "UPDATE ResizeJobs SET Status = ?, Error = NULL, StartedAt = NULL, FinishedAt = NULL"
+                + " WHERE JobId = ? AND Status = ?")) {
+            st.setString(1, STATUS_PENDING);
+            st.setString(2, jobId);
+            st.setString(3, STATUS_FAILED);
+            return Metrics.time(Metrics.JDBC_QUERY, st::executeUpdate) > 0;
+        }
+    }
+
+    public static void markStarted(Connection connection, String jobId) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "UPDATE ResizeJobs SET StartedAt = CURRENT_TIMESTAMP(3) WHERE JobId = ?")) {
+            st.setString(1, jobId);
+            Metrics.time(Metrics.JDBC_QUERY, st::executeUpdate);
+        }
+    }
+
+    public static void markFinished(Connection connection, String jobId, String status, String error) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "UPDATE ResizeJobs SET Status = ?, Error = ?, FinishedAt = CURRENT_TIMESTAMP(3) WHERE JobId = ?")) {
+            st.setString(1, status);
+            st.setString(2, error == null ? null : error.substring(0, Math.min(error.length(), MAX_ERROR_LENGTH)));
+            st.setString(3, jobId);
+            Metrics.time(Metrics.JDBC_QUERY, st::executeUpdate);
+        }
+    }
+
+    // null, wenn es den Job nicht gibt
+    public static Job find(Connection connection, String jobId) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "SELECT JobId, S3Key, Status, Error, CreatedAt, StartedAt, FinishedAt FROM ResizeJobs WHERE JobId = ?")) {
+            st.setString(1, jobId);
+            try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, st::executeQuery)) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new Job(rs.getString("JobId"), rs.getString("S3Key"), rs.getString("Status"),
+                        rs.getString("Error"), rs.getTimestamp("CreatedAt"), rs.getTimestamp("StartedAt"),
+                        rs.getTimestamp("FinishedAt"));
+            }
+        }
+    }
+
+    public static class Job {
+        public final String jobId;
+        public final String s3Key;
+        public final String status;
+        public final String error;
+        public final Timestamp createdAt;
+        public final Timestamp startedAt;
+        public final Timestamp finishedAt;
+
+        Job(String jobId, String s3Key, String status, String error,
+                Timestamp createdAt, Timestamp startedAt, Timestamp finishedAt) {
+            this.jobId = jobId;
+            this.s3Key = s3Key;
+            this.status = status;
+            this.error = error;
+            this.createdAt = createdAt;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package vgu.cloud26;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// Deduplizierte Inhalte liegen unter einem Key aus ihrem Hash (sha256/<hash>.<endung>), den kein normaler
+// Upload verwenden darf. Duplikat-Zeilen in Photos zeigen nur auf solche Keys: der Key eines Nutzers kann
+// jederzeit mit anderem Inhalt überschrieben werden, und alle Duplikate würden mitwechseln.
+// Mehrere Zeilen teilen sich denselben Key; gelöscht wird in S3 erst, wenn keine Zeile mehr darauf zeigt.
+public final class SharedContent {
+
+    public static final String PREFIX = "sha256/";
+
+    private SharedContent() {
+    }
+
+    // Endung bleibt erhalten, MIME-Typ und Bild-Erkennung hängen daran
+    public static String key(String contentHash, String originalKey) {
+        int dot = originalKey.lastIndexOf('.');
+        String extension = dot > originalKey.lastIndexOf('/') ? originalKey.substring(dot).toLowerCase() : "";
+        return PREFIX + contentHash + extension;
+    }
+
+    public static boolean isSharedKey(String key) {
+        return key != null && key.startsWith(PREFIX);
+    }
+
+    // Beim ersten Duplikat: Original und Renditions serverseitig (CopyObject, keine Bytes durch die Lambda)
+    // unter den Hash-Key kopieren. Spätere Duplikate finden direkt die Zeile mit dem Hash-Key.
+    // null, wenn sich der Thumbnail-Key nicht zuordnen lässt - dann normal hochladen.
+    public static PhotoStore.ContentMatch share(S3Client s3, String originalBucket, String resizedBucket,
+            String resizedPrefix, PhotoStore.ContentMatch match) {
+        if (isSharedKey(match.s3Key)) {
+            return match;
+        }
+        String sharedKey = key(match.contentHash, match.s3Key);
+        String from = resizedPrefix + match.s3Key;
+        String to = resizedPrefix + sharedKey;
+        if (!match.thumbnailKey.endsWith(from)) {
+            return null;
+        }
+        // Thumbnail aus Photos (auch bei einer Auswahl über "sizes"), w<Größe>/ bleibt davor
+        String sharedThumbnail = match.thumbnailKey.substring(0, match.thumbnailKey.length() - from.length()) + to;
+
+        copy(s3, originalBucket, match.s3Key, sharedKey);
+        copy(s3, resizedBucket, match.thumbnailKey, sharedThumbnail);
+        for (int size : ImageRenditions.parseSizes(null)) {
+            String rendition = ImageRenditions.renditionKey(from, size);
+            if (!rendition.equals(match.thumbnailKey)) {
+                copyIfExists(s3, resizedBucket, rendition, ImageRenditions.renditionKey(to, size));
+            }
+        }
+        return match.withKeys(sharedKey, sharedThumbnail);
+    }
+
+    // Gleicher Inhalt mehrfach im selben Upload: das gerade hochgeladene Original unter den Hash-Key kopieren.
+    // Renditions gibt es noch keine, die Duplikat-Zeilen bleiben ohne Thumbnail wie die übrigen neuen Zeilen.
+    public static PhotoStore.ContentMatch shareUploaded(S3Client s3, String originalBucket, String s3Key,
+            String contentHash, long sizeBytes, String contentType) {
+        String sharedKey = key(contentHash, s3Key);
+        copy(s3, originalBucket, s3Key, sharedKey);
+        return PhotoStore.ContentMatch.unprocessed(contentHash, sharedKey, sizeBytes, contentType);
+    }
+
+    private static void copy(S3Client s3, String bucket, String sourceKey, String destinationKey) {
+        s3.copyObject(CopyObjectRequest.builder()
+                .sourceBucket(bucket)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucket)
+                .destinationKey(destinationKey)
+                .build());
+    }
+
+    // Nicht jede konfigurierte Größe muss existieren (z.B. nur eine Auswahl über "sizes" hochgeladen)
+    private static void copyIfExists(S3Client s3, String bucket, String sourceKey, String destinationKey) {
+        try {
+            copy(s3, bucket, sourceKey, destinationKey);
+        } catch (S3Exception e) {
+            if (e.statusCode() != 404) {
+                throw e;
+            }
+        }
+    }
+}
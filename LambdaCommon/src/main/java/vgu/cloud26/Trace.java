@@ -0,0 +1,227 @@
+package vgu.cloud26;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+
+// Trace-Kontext über Lambda-Aufrufe hinweg: jede Funktion ist ein Span, jeder Invoke einer Unter-Lambda
+// ebenfalls (Client-Seite). Trace-ID und Parent-Span reisen im Payload mit:
+//   Map-Payloads (UploadObject, Resizer, ...)  -> Feld "_trace": "<traceId>;<parentSpanId>"
+//   API-Gateway-Events (GetObject, ...)        -> Header X-Cloud26-Trace mit demselben Wert
+// Ohne eingehenden Kontext beginnt ein neuer Trace (Root aus X-Amzn-Trace-Id, falls API Gateway ihn setzt).
+//
+// Jeder Span schreibt beim Start und Ende eine JSON-Zeile ins Log; TraceReport (LambdaLoadTest)
+// baut daraus den Baum und den kritischen Pfad einer Anfrage. Wie Metrics hängt der laufende Span
+// statisch am Container, Lambda bearbeitet dort nur einen Aufruf gleichzeitig.
+public final class Trace {
+
+    public static final String FIELD = "_trace";
+    public static final String HEADER = "X-Cloud26-Trace";
+    private static final String AMZN_TRACE_HEADER = "X-Amzn-Trace-Id";
+
+    public static final String KIND_FUNCTION = "function";
+    public static final String KIND_INVOKE = "invoke";
+
+    private static final AtomicBoolean COLD = new AtomicBoolean(true);
+    private static volatile Trace current;
+
+    private final LambdaLogger logger;
+    private final Span span;
+    private final String requestId;
+    private final boolean coldStart;
+
+    private Trace(Context context, String incoming) {
+        String traceId = null;
+        String parentSpanId = null;
+        if (incoming != null) {
+            int separator = incoming.indexOf(';');
+            traceId = separator < 0 ? incoming : incoming.substring(0, separator);
+            parentSpanId = separator < 0 ? null : incoming.substring(separator + 1);
+        }
+        // IDs landen unescaped in Logzeilen und Payloads: nur Hex/Ziffern/Bindestriche übernehmen
+        if (!isValidId(traceId)) {
+            traceId = null;
+            parentSpanId = null;
+        } else if (!isValidId(parentSpanId)) {
+            parentSpanId = null;
+        }
+        this.logger = context.getLogger();
+        this.requestId = context.getAwsRequestId();
+        this.coldStart = COLD.getAndSet(false);
+        this.span = new Span(this, traceId == null ? newId(32) : traceId,
+                parentSpanId, context.getFunctionName(), KIND_FUNCTION);
+    }
+
+    // Am Anfang von handleRequest, end() im finally
+    public static Trace begin(Context context, Map<String, Object> input) {
+        String incoming = null;
+        if (input != null) {
+            Object field = input.get(FIELD);
+            if (field != null) {
+                incoming = String.valueOf(field);
+            } else if (input.get("headers") instanceof Map) {
+                incoming = fromHeaders((Map<?, ?>) input.get("headers"));
+            }
+        }
+        return start(context, incoming);
+    }
+
+    public static Trace begin(Context context, APIGatewayProxyRequestEvent event) {
+        return start(context, event == null || event.getHeaders() == null ? null : fromHeaders(event.getHeaders()));
+    }
+
+    private static Trace start(Context context, String incoming) {
+        Trace trace = new Trace(context, incoming);
+        current = trace;
+        trace.span.log("start", 0);
+        return trace;
+    }
+
+    public void end() {
+        span.end();
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    public String traceId() {
+        return span.traceId;
+    }
+
+    // null außerhalb eines Aufrufs
+    public static String currentTraceId() {
+        Trace trace = current;
+        return trace == null ? null : trace.span.traceId;
+    }
+
+    // Client-Span um einen Invoke; der Wert von header() kommt in den Payload der Unter-Lambda.
+    // Außerhalb eines Aufrufs ein Span ohne Ausgabe, header() ist dann null.
+    public static Span invoke(String functionName) {
+        Trace trace = current;
+        if (trace == null) {
+            return new Span(null, null, null, functionName, KIND_INVOKE);
+        }
+        Span span = new Span(trace, trace.span.traceId, trace.span.spanId, functionName, KIND_INVOKE);
+        span.log("start", 0);
+        return span;
+    }
+
+    // Setzt "_trace" als erstes Feld in ein JSON-Objekt, ohne es zu parsen (Payloads mit Base64-Bildern sind groß)
+    public static String inject(String jsonPayload, Span span) {
+        String header = span.header();
+        if (header == null || jsonPayload == null || !jsonPayload.trim().startsWith("{")) {
+            return jsonPayload;
+        }
+        String body = jsonPayload.trim().substring(1).trim();
+        String field = "\"" + FIELD + "\":\"" + header + "\"";
+        return "{" + field + (body.startsWith("}") ? "" : ",") + body;
+    }
+
+    private static String fromHeaders(Map<?, ?> headers) {
+        String amznRoot = null;
+        for (Map.Entry<?, ?> entry : headers.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            if (HEADER.equalsIgnoreCase(name) && entry.getValue() != null) {
+                return String.valueOf(entry.getValue());
+            }
+            if (AMZN_TRACE_HEADER.equalsIgnoreCase(name) && entry.getValue() != null) {
+                amznRoot = amznRoot(String.valueOf(entry.getValue()));
+            }
+        }
+        return amznRoot;
+    }
+
+    // "Root=1-5759e988-bd862e3fe1be46a994272793;Parent=...;Sampled=1" -> Root-ID, damit X-Ray und Logs zusammenpassen
+    private static String amznRoot(String value) {
+        for (String part : value.split(";")) {
+            if (part.startsWith("Root=")) {
+                return part.substring("Root=".length());
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValidId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 64) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(Character.isLetterOrDigit(c) && c < 128) && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String newId(int hexDigits) {
+        StringBuilder id = new StringBuilder(hexDigits);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (id.length() < hexDigits) {
+            id.append(String.format("%016x", random.nextLong()));
+        }
+        return id.substring(0, hexDigits);
+    }
+
+    public static final class Span {
+        private final Trace trace;
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final String name;
+        private final String kind;
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private boolean ended;
+
+        private Span(Trace trace, String traceId, String parentSpanId, String name, String kind) {
+            this.trace = trace;
+            this.traceId = traceId;
+            this.spanId = trace == null ? null : newId(16);
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.kind = kind;
+        }
+
+        public String header() {
+            return trace == null ? null : traceId + ";" + spanId;
+        }
+
+        public synchronized void end() {
+            if (ended || trace == null) {
+                return;
+            }
+            ended = true;
+            log("end", System.nanoTime() - startNanos);
+        }
+
+        // {"traceId":..,"spanId":..,"parentSpanId":..,"name":..,"kind":..,"event":"start|end","startMs":..,"durationMs":..}
+        private void log(String event, long durationNanos) {
+            if (trace == null || trace.logger == null) {
+                return;
+            }
+            StringBuilder line = new StringBuilder(256)
+                    .append("{\"traceId\":\"").append(traceId)
+                    .append("\",\"spanId\":\"").append(spanId).append('"');
+            if (parentSpanId != null) {
+                line.append(",\"parentSpanId\":\"").append(parentSpanId).append('"');
+            }
+            line.append(",\"name\":\"").append(name == null ? "unknown" : name)
+                    .append("\",\"kind\":\"").append(kind)
+                    .append("\",\"event\":\"").append(event)
+                    .append("\",\"startMs\":").append(startMillis);
+            if ("end".equals(event)) {
+                line.append(",\"durationMs\":").append(Math.round(durationNanos / 1000.0) / 1000.0);
+            }
+            if (KIND_FUNCTION.equals(kind)) {
+                line.append(",\"requestId\":\"").append(trace.requestId)
+                        .append("\",\"coldStart\":").append(trace.coldStart);
+            }
+            trace.logger.log(line.append('}').toString());
+        }
+    }
+}
@@ -5,7 +5,6 @@ import java.util.Map;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
@@ -14,6 +13,17 @@ public class LambdaDeleteObject implements RequestHandler<Map<String, Object>, S
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private String handle(Map<String, Object> input, Context context) {
         context.getLogger().log("Delete Object Lambda gestartet");
         
         try {
@@ -27,10 +37,8 @@ public class LambdaDeleteObject implements RequestHandler<Map<String, Object>, S
             
             context.getLogger().log("Lösche: " + bucket + "/" + key);
             
-            // S3 Client erstellen
-            S3Client s3Client = S3Client.builder()
-                    .region(Region.AP_SOUTHEAST_2)
-                    .build();
+            // S3 Client aus dem Container wiederverwenden
+            S3Client s3Client = AwsClients.s3();
             
             // Delete Request erstellen
             DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
@@ -1,35 +1,44 @@
 package vgu.cloud26;
 
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.rds.RdsUtilities;
-import software.amazon.awssdk.services.rds.model.GenerateAuthenticationTokenRequest;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
 
 public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Object>, APIGatewayProxyResponseEvent> {
 
-    // ===== CONFIG =====
-    private static final Region AWS_REGION = Region.AP_SOUTHEAST_2;
+    // ===== KONFIGURATION =====
+    private static final Region AWS_REGION = AwsClients.REGION;
 
-    private static final String ORIGINAL_BUCKET = "lmitu16";
-    private static final String RESIZED_BUCKET  = "myresizedimagesbucket";
+    private static final String ORIGINAL_BUCKET = Config.originalBucket();
+    private static final String RESIZED_BUCKET  = Config.resizedBucket();
     private static final String RESIZED_PREFIX  = "resized-";
+    // Dieselben RENDITION_SIZES wie der Resizer; jede Größe hat ihren eigenen Key (w<size>/resized-<key>).
+    // Uploads dürfen über "sizes" nur daraus wählen, damit deckt diese Liste jede Rendition ab.
+    private static final List<Integer> RENDITION_SIZES = ImageRenditions.parseSizes(null);
 
     private static final String RDS_INSTANCE_HOSTNAME = "database-1.cdq0ekg8q844.ap-southeast-2.rds.amazonaws.com";
     private static final int    RDS_INSTANCE_PORT     = 3306;
@@ -37,18 +46,42 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
     private static final String JDBC_URL =
             "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME + ":" + RDS_INSTANCE_PORT + "/cloud26";
 
-    private final S3Client s3Client = S3Client.builder()
-            .region(AWS_REGION)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    private final S3Client s3Client = AwsClients.s3();
+
+    // IAM-Token und JDBC-Verbindung überleben warme Aufrufe
+    private static final RdsConnectionProvider DB =
+            new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
+
+    // S3 erlaubt höchstens 1000 Keys pro DeleteObjects
+    private static final int S3_DELETE_BATCH = 1000;
+    // Obergrenze pro Bulk-Request, hält die IN (...)-Liste und die Antwort klein
+    private static final int MAX_BULK_KEYS = 10000;
+
+    // DB- und S3-Löschungen laufen nebeneinander
+    private static final ExecutorService DELETE_POOL = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "delete-worker");
+        t.setDaemon(true);
+        return t;
+    });
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handle(Map<String, Object> input, Context context) {
 
         String method = getHttpMethod(input);
         if (method == null) method = "POST";
 
-        // 1) Handle CORS preflight properly
+        // 1) CORS-Preflight sauber beantworten
         if ("OPTIONS".equalsIgnoreCase(method)) {
             return createCorsResponse(200, "");
         }
@@ -56,10 +89,10 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         context.getLogger().log("Delete Orchestrator started");
 
         try {
-            // 2) Parse body safely
+            // 2) Body sicher parsen
             String requestBody = extractBodyAsString(input);
 
-            // Some invocations might send key directly (fallback)
+            // Manche Aufrufe schicken den Key direkt (Fallback)
             if ((requestBody == null || requestBody.isEmpty()) && input != null && input.containsKey("key")) {
                 JSONObject fallback = new JSONObject();
                 fallback.put("key", String.valueOf(input.get("key")));
@@ -71,29 +104,65 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
             }
 
             JSONObject inputJson = new JSONObject(requestBody);
-            if (!inputJson.has("key")) {
-                return createCorsJsonResponse(400, new JSONObject().put("error", "JSON body must contain 'key'").toString());
+            if (inputJson.has("keys") || inputJson.has("ids")) {
+                return handleBulkDelete(inputJson, context);
             }
-
-            String key = inputJson.getString("key").trim();
-            if (key.isEmpty()) {
-                return createCorsJsonResponse(400, new JSONObject().put("error", "'key' must not be empty").toString());
+            if (!inputJson.has("key") && !inputJson.has("id")) {
+                return createCorsJsonResponse(400, new JSONObject().put("error", "JSON body must contain 'id', 'ids', 'key' or 'keys'").toString());
             }
 
-            context.getLogger().log("Deleting key: " + key);
-
-            // 3) Delete DB row (IAM auth token)
-            DbDeleteResult dbResult = deleteFromDatabaseByS3Key_IamAuth(key, context);
-
-            // 4) Delete from S3 (original + resized)
-            S3DeleteResult s3Original = deleteFromS3(ORIGINAL_BUCKET, key, context);
-            S3DeleteResult s3Resized  = deleteFromS3(RESIZED_BUCKET, RESIZED_PREFIX + key, context);
+            // 3) DB-Zeile(n) löschen (IAM-Token) und 4) S3-Objekte (Original + alle Renditions).
+            // {"key": k} löscht alle Zeilen zu k; ein normaler Key gehört danach keiner Zeile mehr, daher laufen
+            // DB und S3 wie bisher gleichzeitig. {"id": n} löscht genau eine Zeile, ihr Key (z.B. sha256/ bei
+            // Duplikaten) kann noch anderen Zeilen gehören: erst die DB, S3 nur, wenn keine Zeile mehr darauf zeigt.
+            DbDeleteResult dbResult;
+            String key;
+            S3DeleteResult s3Original;
+            BulkS3Result s3Resized;
+            if (inputJson.has("id")) {
+                long id = inputJson.getLong("id");
+                context.getLogger().log("Deleting ID: " + id);
+                dbResult = deleteFromDatabase(connection -> PhotoStore.deleteByIds(connection, List.of(id)),
+                        "ID=" + id, context);
+                key = dbResult.s3Keys.isEmpty() ? null : dbResult.s3Keys.get(0);
+                if (key != null && dbResult.unreferencedKeys.contains(key)) {
+                    CompletableFuture<S3DeleteResult> originalFuture = deleteOriginalAsync(key, context);
+                    CompletableFuture<BulkS3Result> resizedFuture = deleteRenditionsAsync(key, context);
+                    s3Original = originalFuture.join();
+                    s3Resized  = resizedFuture.join();
+                } else {
+                    s3Original = !dbResult.success ? S3DeleteResult.fail("Skipped: database delete failed")
+                            : key == null ? S3DeleteResult.ok("No photo with this ID")
+                            : S3DeleteResult.ok("Kept " + key + ": still referenced by other photos");
+                    s3Resized = new BulkS3Result(RESIZED_BUCKET, 0, new JSONArray());
+                }
+            } else {
+                key = inputJson.getString("key").trim();
+                if (key.isEmpty()) {
+                    return createCorsJsonResponse(400, new JSONObject().put("error", "'key' must not be empty").toString());
+                }
+                if (SharedContent.isSharedKey(key)) {
+                    return createCorsJsonResponse(400, new JSONObject()
+                            .put("error", "'" + key + "' is shared by deduplicated photos, delete by 'id'").toString());
+                }
+                context.getLogger().log("Deleting key: " + key);
+                CompletableFuture<DbDeleteResult> dbFuture = CompletableFuture.supplyAsync(
+                        () -> deleteFromDatabase(connection -> PhotoStore.deleteByS3Keys(connection, List.of(key)),
+                                "S3Key=" + key, context), DELETE_POOL);
+                CompletableFuture<S3DeleteResult> originalFuture = deleteOriginalAsync(key, context);
+                CompletableFuture<BulkS3Result> resizedFuture = deleteRenditionsAsync(key, context);
+                // Jeder Schritt fängt seine Fehler selbst, join() wartet nur
+                dbResult   = dbFuture.join();
+                s3Original = originalFuture.join();
+                s3Resized  = resizedFuture.join();
+            }
 
-            // 5) Response JSON
+            // 5) Antwort-JSON
             JSONObject response = new JSONObject();
             response.put("success", true);
             response.put("message", "Delete completed");
-            response.put("key", key);
+            if (inputJson.has("id")) response.put("id", inputJson.getLong("id"));
+            response.put("key", key == null ? JSONObject.NULL : key);
 
             response.put("dbSuccess", dbResult.success);
             response.put("dbDeletedRows", dbResult.rowsDeleted);
@@ -102,8 +171,11 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
             response.put("s3OriginalSuccess", s3Original.success);
             response.put("s3OriginalMessage", s3Original.message);
 
-            response.put("s3ResizedSuccess", s3Resized.success);
-            response.put("s3ResizedMessage", s3Resized.message);
+            response.put("s3ResizedSuccess", s3Resized.errors.length() == 0);
+            response.put("s3ResizedMessage", s3Resized.errors.length() == 0
+                    ? "Deleted " + s3Resized.deleted + " renditions from " + RESIZED_BUCKET
+                    : s3Resized.errors.toString());
+            response.put("keptKeys", new JSONArray(dbResult.keptKeys()));
 
             return createCorsJsonResponse(200, response.toString());
 
@@ -115,7 +187,114 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         }
     }
 
-    // ===== CORS Responses =====
+    // ===== Bulk-Löschen =====
+    // {"keys": [...]}: ein DELETE ... IN (...) und parallel dazu DeleteObjects in 1000er-Blöcken pro Bucket.
+    // {"ids": [...]}: erst die DB, danach S3 nur für die Keys, auf die keine Zeile mehr zeigt (geteilte Keys).
+    private APIGatewayProxyResponseEvent handleBulkDelete(JSONObject inputJson, Context context) {
+        boolean byId = inputJson.has("ids");
+        JSONArray valuesJson = inputJson.optJSONArray(byId ? "ids" : "keys");
+        String field = byId ? "'ids'" : "'keys'";
+        if (valuesJson == null) {
+            return createCorsJsonResponse(400, new JSONObject().put("error", field + " must be an array").toString());
+        }
+
+        Set<Long> ids = new LinkedHashSet<Long>();
+        Set<String> unique = new LinkedHashSet<String>();
+        for (int i = 0; i < valuesJson.length(); i++) {
+            if (byId) {
+                long id = valuesJson.optLong(i, -1);
+                if (id >= 0) ids.add(id);
+                continue;
+            }
+            String k = valuesJson.optString(i, "").trim();
+            if (SharedContent.isSharedKey(k)) {
+                return createCorsJsonResponse(400, new JSONObject()
+                        .put("error", "'" + k + "' is shared by deduplicated photos, delete by 'ids'").toString());
+            }
+            if (!k.isEmpty()) unique.add(k);
+        }
+        int count = byId ? ids.size() : unique.size();
+        if (count == 0) {
+            return createCorsJsonResponse(400, new JSONObject().put("error", field + " must not be empty").toString());
+        }
+        if (count > MAX_BULK_KEYS) {
+            return createCorsJsonResponse(400, new JSONObject()
+                    .put("error", "At most " + MAX_BULK_KEYS + " " + (byId ? "ids" : "keys") + " per request").toString());
+        }
+
+        context.getLogger().log("Bulk delete: " + count + (byId ? " ids" : " keys"));
+
+        DbDeleteResult dbResult;
+        List<CompletableFuture<BulkS3Result>> s3Futures;
+        if (byId) {
+            dbResult = deleteFromDatabase(connection -> PhotoStore.deleteByIds(connection, ids), count + " ids", context);
+            s3Futures = deleteManyAsync(dbResult.unreferencedKeys, context);
+        } else {
+            List<String> keys = new ArrayList<String>(unique);
+            CompletableFuture<DbDeleteResult> dbFuture = CompletableFuture.supplyAsync(
+                    () -> deleteFromDatabase(connection -> PhotoStore.deleteByS3Keys(connection, keys),
+                            count + " keys", context), DELETE_POOL);
+            s3Futures = deleteManyAsync(keys, context);
+            dbResult = dbFuture.join();
+        }
+
+        int originalDeleted = 0;
+        int resizedDeleted = 0;
+        JSONArray s3Errors = new JSONArray();
+        for (CompletableFuture<BulkS3Result> future : s3Futures) {
+            BulkS3Result r = future.join();
+            if (ORIGINAL_BUCKET.equals(r.bucket)) originalDeleted += r.deleted;
+            else resizedDeleted += r.deleted;
+            for (int i = 0; i < r.errors.length(); i++) s3Errors.put(r.errors.get(i));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("success", dbResult.success && s3Errors.length() == 0);
+        response.put("message", "Bulk delete completed");
+        response.put(byId ? "idCount" : "keyCount", count);
+
+        response.put("dbSuccess", dbResult.success);
+        response.put("dbDeletedRows", dbResult.rowsDeleted);
+        if (!dbResult.success) response.put("dbError", dbResult.errorMessage);
+
+        response.put("s3OriginalDeleted", originalDeleted);
+        response.put("s3ResizedDeleted", resizedDeleted);
+        response.put("s3Errors", s3Errors);
+        response.put("keptKeys", new JSONArray(dbResult.keptKeys()));
+
+        return createCorsJsonResponse(200, response.toString());
+    }
+
+    // ===== S3-Löschen im DELETE_POOL =====
+    private CompletableFuture<S3DeleteResult> deleteOriginalAsync(String key, Context context) {
+        return CompletableFuture.supplyAsync(() -> deleteFromS3(ORIGINAL_BUCKET, key, context), DELETE_POOL);
+    }
+
+    private CompletableFuture<BulkS3Result> deleteRenditionsAsync(String key, Context context) {
+        List<String> renditionKeys = ImageRenditions.renditionKeys(RESIZED_PREFIX + key, RENDITION_SIZES);
+        return CompletableFuture.supplyAsync(() -> deleteManyFromS3(RESIZED_BUCKET, renditionKeys, context), DELETE_POOL);
+    }
+
+    // Originale und Renditions vieler Keys; eine Rendition pro Größe, daher eigene Blöcke für den Resized-Bucket
+    private List<CompletableFuture<BulkS3Result>> deleteManyAsync(List<String> keys, Context context) {
+        List<String> resizedKeys = new ArrayList<String>(keys.size() * RENDITION_SIZES.size());
+        for (String k : keys) resizedKeys.addAll(ImageRenditions.renditionKeys(RESIZED_PREFIX + k, RENDITION_SIZES));
+
+        List<CompletableFuture<BulkS3Result>> s3Futures = new ArrayList<CompletableFuture<BulkS3Result>>();
+        for (int i = 0; i < keys.size(); i += S3_DELETE_BATCH) {
+            List<String> originalChunk = keys.subList(i, Math.min(i + S3_DELETE_BATCH, keys.size()));
+            s3Futures.add(CompletableFuture.supplyAsync(
+                    () -> deleteManyFromS3(ORIGINAL_BUCKET, originalChunk, context), DELETE_POOL));
+        }
+        for (int i = 0; i < resizedKeys.size(); i += S3_DELETE_BATCH) {
+            List<String> resizedChunk = resizedKeys.subList(i, Math.min(i + S3_DELETE_BATCH, resizedKeys.size()));
+            s3Futures.add(CompletableFuture.supplyAsync(
+                    () -> deleteManyFromS3(RESIZED_BUCKET, resizedChunk, context), DELETE_POOL));
+        }
+        return s3Futures;
+    }
+
+    // ===== CORS-Antworten =====
     private APIGatewayProxyResponseEvent createCorsResponse(int statusCode, String body) {
         APIGatewayProxyResponseEvent res = new APIGatewayProxyResponseEvent();
         res.setStatusCode(statusCode);
@@ -141,7 +320,7 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         return h;
     }
 
-    // ===== Body extraction (Function URL can send base64) =====
+    // ===== Body auslesen (Function URL kann Base64 schicken) =====
     private String extractBodyAsString(Map<String, Object> input) {
         if (input == null) return null;
 
@@ -161,16 +340,16 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         return new String(decoded, StandardCharsets.UTF_8);
     }
 
-    // ===== HTTP method extraction (Function URL event schema) =====
+    // ===== HTTP-Methode auslesen (Event-Schema der Function URL) =====
     @SuppressWarnings("unchecked")
     private String getHttpMethod(Map<String, Object> input) {
         if (input == null) return null;
 
-        // Sometimes present in REST API style
+        // Im REST-API-Format manchmal vorhanden
         Object httpMethod = input.get("httpMethod");
         if (httpMethod != null) return String.valueOf(httpMethod);
 
-        // Function URL style: requestContext.http.method
+        // Function-URL-Format: requestContext.http.method
         Object rcObj = input.get("requestContext");
         if (rcObj instanceof Map) {
             Map<String, Object> rc = (Map<String, Object>) rcObj;
@@ -184,7 +363,7 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         return null;
     }
 
-    // ===== S3 delete =====
+    // ===== S3-Löschen =====
     private S3DeleteResult deleteFromS3(String bucket, String key, Context context) {
         try {
             context.getLogger().log("S3 delete: bucket=" + bucket + ", key=" + key);
@@ -203,29 +382,53 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         }
     }
 
-    // ===== DB delete via IAM token (same pattern as your upload) =====
-    private DbDeleteResult deleteFromDatabaseByS3Key_IamAuth(String s3Key, Context context) {
-        context.getLogger().log("DB delete (IAM): starting for S3Key=" + s3Key);
-        context.getLogger().log("DB url=" + JDBC_URL + ", user=" + DB_USER + ", region=" + AWS_REGION);
-
+    // Quiet-Modus: S3 meldet nur die Keys, die nicht gelöscht werden konnten
+    private BulkS3Result deleteManyFromS3(String bucket, List<String> keys, Context context) {
+        JSONArray errors = new JSONArray();
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            context.getLogger().log("S3 bulk delete: bucket=" + bucket + ", keys=" + keys.size());
 
-            Properties props = new Properties();
-            props.setProperty("useSSL", "true");
-            props.setProperty("user", DB_USER);
-            props.setProperty("password", generateAuthToken());
+            List<ObjectIdentifier> objects = new ArrayList<ObjectIdentifier>(keys.size());
+            for (String k : keys) objects.add(ObjectIdentifier.builder().key(k).build());
 
-            try (Connection connection = DriverManager.getConnection(JDBC_URL, props)) {
-                String sql = "DELETE FROM Photos WHERE S3Key = ?";
+            DeleteObjectsResponse res = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder().objects(objects).quiet(true).build())
+                    .build());
+
+            for (S3Error err : res.errors()) {
+                errors.put(new JSONObject()
+                        .put("bucket", bucket)
+                        .put("key", err.key())
+                        .put("message", err.code() + ": " + err.message()));
+            }
+            return new BulkS3Result(bucket, keys.size() - res.errors().size(), errors);
 
-                try (PreparedStatement st = connection.prepareStatement(sql)) {
-                    st.setString(1, s3Key);
-                    int rows = st.executeUpdate();
-                    context.getLogger().log("DB delete OK, rows affected=" + rows);
-                    return DbDeleteResult.ok(rows);
-                }
+        } catch (Exception e) {
+            context.getLogger().log("S3 bulk delete FAILED: " + e.getClass().getName() + " - " + e.getMessage());
+            for (String k : keys) {
+                errors.put(new JSONObject()
+                        .put("bucket", bucket)
+                        .put("key", k)
+                        .put("message", e.getClass().getName() + ": " + e.getMessage()));
             }
+            return new BulkS3Result(bucket, 0, errors);
+        }
+    }
+
+    // ===== DB-Löschen mit IAM-Token (gleiches Muster wie beim Upload) =====
+    // Zeilen löschen und prüfen, welche Keys noch Zeilen haben, in einer Transaktion (PhotoStore)
+    private DbDeleteResult deleteFromDatabase(RdsConnectionProvider.Work<PhotoStore.Deletion> work, String what,
+            Context context) {
+        context.getLogger().log("DB delete (IAM): starting for " + what);
+        context.getLogger().log("DB url=" + JDBC_URL + ", user=" + DB_USER + ", region=" + AWS_REGION);
+
+        try {
+            // Die Verbindung gehört dem Provider
+            PhotoStore.Deletion deletion = DB.execute(work);
+            context.getLogger().log("DB delete OK, rows affected=" + deletion.rows
+                    + ", unreferenced keys=" + deletion.unreferencedKeys.size());
+            return DbDeleteResult.ok(deletion);
 
         } catch (Exception e) {
             context.getLogger().log("DB delete FAILED: " + e.getClass().getName() + " - " + e.getMessage());
@@ -233,42 +436,40 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
         }
     }
 
-    private String generateAuthToken() throws Exception {
-        RdsUtilities rdsUtilities = RdsUtilities.builder().build();
-
-        return rdsUtilities.generateAuthenticationToken(
-                GenerateAuthenticationTokenRequest.builder()
-                        .hostname(RDS_INSTANCE_HOSTNAME)
-                        .port(RDS_INSTANCE_PORT)
-                        .username(DB_USER)
-                        .region(AWS_REGION)
-                        .credentialsProvider(DefaultCredentialsProvider.create())
-                        .build()
-        );
-    }
-
     private String safe(String s) {
         return s == null ? "" : s.replace("\"", "'");
     }
 
-    // ===== Result wrapper =====
+    // ===== Ergebnis-Wrapper =====
     private static class DbDeleteResult {
         final boolean success;
         final int rowsDeleted;
         final String errorMessage;
+        // Keys der gelöschten Zeilen und die davon, auf die keine Zeile mehr zeigt
+        final List<String> s3Keys;
+        final List<String> unreferencedKeys;
 
-        private DbDeleteResult(boolean success, int rowsDeleted, String errorMessage) {
+        private DbDeleteResult(boolean success, int rowsDeleted, String errorMessage,
+                List<String> s3Keys, List<String> unreferencedKeys) {
             this.success = success;
             this.rowsDeleted = rowsDeleted;
             this.errorMessage = errorMessage;
+            this.s3Keys = s3Keys;
+            this.unreferencedKeys = unreferencedKeys;
         }
 
-        static DbDeleteResult ok(int rows) {
-            return new DbDeleteResult(true, rows, null);
+        static DbDeleteResult ok(PhotoStore.Deletion deletion) {
+            return new DbDeleteResult(true, deletion.rows, null, deletion.s3Keys, deletion.unreferencedKeys);
         }
 
         static DbDeleteResult fail(String msg) {
-            return new DbDeleteResult(false, 0, msg);
+            return new DbDeleteResult(false, 0, msg, List.of(), List.of());
+        }
+
+        List<String> keptKeys() {
+            List<String> kept = new ArrayList<String>(s3Keys);
+            kept.removeAll(unreferencedKeys);
+            return kept;
         }
     }
 
@@ -289,4 +490,16 @@ public class LambdaDeleteOrchestrator implements RequestHandler<Map<String, Obje
             return new S3DeleteResult(false, msg);
         }
     }
+
+    private static class BulkS3Result {
+        final String bucket;
+        final int deleted;
+        final JSONArray errors;
+
+        BulkS3Result(String bucket, int deleted, JSONArray errors) {
+            this.bucket = bucket;
+            this.deleted = deleted;
+            this.errors = errors;
+        }
+    }
 }
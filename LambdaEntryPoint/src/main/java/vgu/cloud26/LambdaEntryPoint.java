@@ -1,7 +1,6 @@
 package vgu.cloud26;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.json.JSONObject;
@@ -15,7 +14,6 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.core.exception.SdkClientException;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.lambda.LambdaClient;
 import software.amazon.awssdk.services.lambda.model.InvokeRequest;
 import software.amazon.awssdk.services.lambda.model.InvokeResponse;
@@ -23,69 +21,178 @@ import software.amazon.awssdk.services.lambda.model.InvokeResponse;
 
 public class LambdaEntryPoint implements
         RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    private static final String PAGE_KEY = "index.html";
+
+    // So lange wird index.html ohne Rückfrage ausgeliefert (Env PAGE_CACHE_TTL_SECONDS, Standard 60)
+    private static final long PAGE_TTL_SECONDS = ttlSeconds(System.getenv("PAGE_CACHE_TTL_SECONDS"), 60);
+    private static final long PAGE_TTL_MILLIS = PAGE_TTL_SECONDS * 1000;
+    private static final String CACHE_CONTROL = "public, max-age=" + PAGE_TTL_SECONDS;
+
+    // Bleibt über warme Aufrufe im Container
+    private static volatile CachedPage page;
+
     private final LambdaClient lambdaClient;
        
     public LambdaEntryPoint() {
-        this.lambdaClient = LambdaClient.builder()
-                .region(Region.of("ap-southeast-2"))
-                .build();
+        this.lambdaClient = AwsClients.lambda();
     }
     
-    public String callLambda(String functionName, String payload,  LambdaLogger logger) {
-        String message;
-        InvokeRequest invokeRequest = InvokeRequest.builder()
-                .functionName(functionName)
-                //.invocationType("Event") // Asynchronous invocation
-                .payload(SdkBytes.fromUtf8String(payload))
-                .invocationType("RequestResponse")
-                .build();
+    // Antwort von LambdaGetObject (Status, ETag, Body)
+    private JSONObject invokeGetObject(String ifNoneMatch) {
+        JSONObject body = new JSONObject();
+        body.put("key", PAGE_KEY);
+        if (ifNoneMatch != null) {
+            body.put("ifNoneMatch", ifNoneMatch);
+        }
+        JSONObject json = new JSONObject();
+        json.put("body", body.toString());
+
+        // LambdaGetObject bekommt ein API-Gateway-Event, der Trace-Kontext reist daher als Header
+        Trace.Span span = Trace.invoke("LambdaGetObject");
+        if (span.header() != null) {
+            json.put("headers", new JSONObject().put(Trace.HEADER, span.header()));
+        }
+        try {
+            InvokeResponse invokeResult = lambdaClient.invoke(InvokeRequest.builder()
+                    .functionName("LambdaGetObject")
+                    .payload(SdkBytes.fromUtf8String(json.toString()))
+                    .invocationType("RequestResponse")
+                    .build());
+            return new JSONObject(invokeResult.payload().asUtf8String());
+        } finally {
+            span.end();
+        }
+    }
+
+    // Nur nach Ablauf der TTL wird LambdaGetObject gefragt, mit ETag -> meist 304 ohne Body
+    private CachedPage currentPage(LambdaLogger logger) {
+        CachedPage cached = page;
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.checkedAt < PAGE_TTL_MILLIS) {
+            return cached;
+        }
 
         try {
-            InvokeResponse invokeResult = 
-                    lambdaClient.invoke(invokeRequest);
-      
-            ByteBuffer responsePayload = 
-                    invokeResult.payload().asByteBuffer();
-            String responseString = StandardCharsets.UTF_8.decode(responsePayload).toString();
-
-            JSONObject responseObject = new JSONObject(responseString);
-            message = responseObject.getString("body");
-            logger.log("Response: " + message);
-                          
-            return message;
+            JSONObject response = invokeGetObject(cached == null ? null : cached.etag);
+            int statusCode = response.optInt("statusCode", 500);
+            JSONObject headers = response.optJSONObject("headers");
+            String etag = headers == null ? null : headers.optString("ETag", null);
+
+            if (statusCode == 304 && cached != null) {
+                logger.log("index.html unverändert (" + cached.etag + ")");
+                page = new CachedPage(cached.body, cached.etag, now);
+            } else if (statusCode == 200) {
+                logger.log("index.html neu geladen (" + etag + ")");
+                page = new CachedPage(response.optString("body", ""), etag, now);
+            } else {
+                logger.log("LambdaGetObject Status " + statusCode);
+                return cached;
+            }
         } catch (AwsServiceException | SdkClientException e) {
-            message = "Error " + functionName + 
-                    ": " + e.getMessage();
-            logger.log(message);
+            // Lieber eine veraltete Seite als gar keine
+            logger.log("Error LambdaGetObject: " + e.getMessage());
+            return cached;
         }
-        return message;
+        return page;
     }
-    
+
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent event, Context cntxt) {
+        Trace trace = Trace.begin(cntxt, event);
+        Metrics metrics = Metrics.begin(cntxt);
+        try {
+            return handle(event, cntxt);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent event, Context cntxt) {
         
         LambdaLogger logger = cntxt.getLogger();
         logger.log("Invoking");
-        LambdaEntryPoint caller = new LambdaEntryPoint();
-        JSONObject body = new JSONObject();
-        body.put("key", "index.html");
-        JSONObject json = new JSONObject();
-        json.put("body", body.toString());
-        String payload = json.toString();
-        String message = caller.callLambda("LambdaGetObject", 
-                payload, logger);
+        CachedPage current = currentPage(logger);
+        if (current == null) {
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(502)
+                    .withHeaders(Map.of("content-type", "text/plain"))
+                    .withBody("index.html konnte nicht geladen werden");
+        }
 
-       
-        Map<String, String> headersMap;
-            headersMap = Map.of(
-                    "content-type", "text/html");
+        Map<String, String> headersMap = new HashMap<>();
+        headersMap.put("content-type", "text/html");
+        headersMap.put("cache-control", CACHE_CONTROL);
+        if (current.etag != null) {
+            headersMap.put("etag", current.etag);
+            // Browser hat die Seite schon -> 304 ohne Body
+            if (matchesAny(header(event, "If-None-Match"), current.etag)) {
+                return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(304)
+                        .withHeaders(headersMap);
+            }
+        }
 
-            return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(200)
-                    .withHeaders(headersMap)
-                    .withBody(message)
-                    .withIsBase64Encoded(true);
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withHeaders(headersMap)
+                .withBody(current.body)
+                .withIsBase64Encoded(true);
+    }
+
+    // If-None-Match wie bei S3 (LambdaGetObject): "*", Liste mit Kommas, schwacher Vergleich (W/ zählt nicht)
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private static String opaqueTag(String etag) {
+        String tag = etag.trim();
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String header(APIGatewayProxyRequestEvent event, String name) {
+        Map<String, String> headers = event.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    // Unveränderlich, damit ein Austausch der Referenz genügt
+    private static final class CachedPage {
+        final String body;
+        final String etag;
+        final long checkedAt;
+
+        CachedPage(String body, String etag, long checkedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static long ttlSeconds(String value, long fallback) {
+        try {
+            return value == null ? fallback : Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -1,63 +1,117 @@
 package vgu.cloud26;
 
-import java.util.List;
 import java.util.Map;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 public class LambdaGetListOfObjects implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
+    // S3 liefert höchstens 1000 Keys pro ListObjectsV2-Aufruf
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Ohne "limit": eine Seite in dieser Größe, der Client blättert mit nextContinuationToken weiter
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
-        context.getLogger().log("Received request: " + request.getBody());
-
-        String bucketName = "lmitu16";
-
-        S3Client s3Client = S3Client.builder()
-                .region(Region.AP_SOUTHEAST_2)
-                .build();
+        Trace trace = Trace.begin(context, request);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(request, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
 
-        ListObjectsRequest listObjects = ListObjectsRequest.builder()
-                .bucket(bucketName)
-                .build();
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
+        context.getLogger().log("Received request: " + request.getBody());
 
-        ListObjectsResponse res = s3Client.listObjects(listObjects);
-        List<S3Object> objects = res.contents();
+        String bucketName = Config.originalBucket();
 
-        JSONArray objArray = new JSONArray();
+        S3Client s3Client = AwsClients.s3();
 
-        for (S3Object object : objects) {
-            JSONObject obj = new JSONObject();
-            obj.put("key", object.key());
-            obj.put("size", calKb(object.size()));
-            objArray.put(obj);
+        Map<String, String> params = request.getQueryStringParameters();
+        if (params == null) {
+            params = Map.of();
         }
 
-        // --- RESPONSE MIT CORS ---
-        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
-        response.setStatusCode(200);
-        response.setBody(objArray.toString());
+        // Immer genau eine Seite: Antwortgröße und Heap hängen nicht von der Größe des Buckets ab.
+        // JSON wird direkt beim Lesen geschrieben, ohne JSONArray im Speicher.
+        StringBuilder body = new StringBuilder();
+        writePage(s3Client, bucketName, params, body);
 
-        response.setHeaders(Map.of(
-                "Content-Type", "application/json",
+        // --- RESPONSE MIT CORS (gzip/deflate je nach Accept-Encoding) ---
+        return JsonResponses.json(request, 200, body.toString(), Map.of(
                 "Access-Control-Allow-Origin", "*",
                 "Access-Control-Allow-Headers", "*",
                 "Access-Control-Allow-Methods", "GET, OPTIONS"
         ));
+    }
 
-        return response;
+    // prefix/limit/startAfter/continuationToken optional: eine Seite plus Token für die nächste
+    private static void writePage(S3Client s3Client, String bucketName, Map<String, String> params, StringBuilder out) {
+        int remaining = parseLimit(params.get("limit"));
+        String continuationToken = params.get("continuationToken");
+
+        JSONWriter writer = new JSONWriter(out);
+        writer.object();
+        writer.key("objects");
+        writer.array();
+
+        ListObjectsV2Response res;
+        do {
+            ListObjectsV2Request listObjects = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(params.get("prefix"))
+                    .startAfter(params.get("startAfter"))
+                    .continuationToken(continuationToken)
+                    .maxKeys(remaining)
+                    .build();
+
+            res = s3Client.listObjectsV2(listObjects);
+            for (S3Object object : res.contents()) {
+                writeObject(writer, object);
+            }
+            remaining -= res.contents().size();
+            continuationToken = res.nextContinuationToken();
+            // S3 darf weniger als maxKeys liefern, dann mit dem Token weiterlesen
+        } while (remaining > 0 && Boolean.TRUE.equals(res.isTruncated()));
+
+        writer.endArray();
+        writer.key("isTruncated").value(Boolean.TRUE.equals(res.isTruncated()));
+        if (Boolean.TRUE.equals(res.isTruncated())) {
+            writer.key("nextContinuationToken").value(continuationToken);
+        }
+        writer.endObject();
+    }
+
+    private static void writeObject(JSONWriter writer, S3Object object) {
+        writer.object();
+        writer.key("key").value(object.key());
+        writer.key("size").value(calKb(object.size()));
+        writer.endObject();
+    }
+
+    private static int parseLimit(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            int limit = Integer.parseInt(value.trim());
+            return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        } catch (NumberFormatException e) {
+            return DEFAULT_PAGE_SIZE;
+        }
     }
 
     // Convert bytes to KB
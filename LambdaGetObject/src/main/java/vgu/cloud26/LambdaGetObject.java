@@ -1,9 +1,16 @@
 package vgu.cloud26;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.amazonaws.services.lambda.runtime.Context;
@@ -12,87 +19,302 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 
 import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
-import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 public class LambdaGetObject implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
+    // Höchstens so viele Bytes pro Range-Antwort (Base64 + Lambda-Antwortlimit von 6 MB).
+    // Größere oder offene Bereiche werden gekürzt, Content-Range sagt dem Client, was er bekommen hat.
+    private static final long MAX_RANGE_SIZE = 4L * 1024 * 1024;
+
+    // Batch-Modus für die Galerie: viele Thumbnails in einer Antwort
+    private static final int MAX_BATCH_KEYS = 200;
+    // Summe der Base64-Daten pro Antwort, Rest kommt unter "truncated" zurück und wird nachgeladen.
+    // Ein Objekt, das allein schon darüber liegt, passt nie und steht unter "tooLarge" (einzeln laden).
+    private static final long MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    private static final ExecutorService BATCH_POOL = Executors.newFixedThreadPool(16, r -> {
+        Thread t = new Thread(r, "thumbnail-batch");
+        t.setDaemon(true);
+        return t;
+    });
+
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        Trace trace = Trace.begin(context, request);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(request, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
 
         String requestBody = request.getBody();
         JSONObject bodyJSON = new JSONObject(requestBody);
+        if (bodyJSON.has("keys")) {
+            return handleBatch(bodyJSON, context);
+        }
         String key = bodyJSON.getString("key");
         //Map<String, String> params = request.getQueryStringParameters();
         //String key = params.get("key");
 
-        String bucketName = bodyJSON.optString("bucket", "lmitu16");
-        S3Client s3Client = S3Client.builder()
-                .region(Region.AP_SOUTHEAST_2)
-                .build();
+        String bucketName = bodyJSON.optString("bucket", Config.originalBucket());
+        S3Client s3Client = AwsClients.s3();
 
-        ListObjectsRequest listObjects = ListObjectsRequest
-                .builder()
-                .bucket(bucketName)
-                .build();
+        // Range aus dem HTTP-Header, alternativ im Body (Aufrufe über LambdaEntryPoint)
+        String rangeHeader = header(request, "Range");
+        if (rangeHeader == null) {
+            rangeHeader = bodyJSON.optString("range", null);
+        }
+        String s3Range = toS3Range(rangeHeader);
+
+        // Revalidierung (z.B. Cache in LambdaEntryPoint): unverändert -> 304 ohne Body
+        String ifNoneMatch = header(request, "If-None-Match");
+        if (ifNoneMatch == null) {
+            ifNoneMatch = bodyJSON.optString("ifNoneMatch", null);
+        }
 
-        ListObjectsResponse res = s3Client.listObjects(listObjects);
-        List<S3Object> objects = res.contents();
-        
          // 1 MB is equal to 1024 kilobytes (KB), and 1 KB is equal to 1024 bytes.
         int maxSize = 10 * 1024 * 1024;
-        Boolean found = false;
-        Boolean validSize = false;
+        int statusCode = 200;
         String mimeType = "application/octet-stream";
-        for (S3Object object : objects) {
-            if (object.key().equals(key)) {
-                found = true;
-                int objectSize = Math.toIntExact(object.size());
-                if (objectSize < maxSize){
-                    validSize = true ;
-                }
-                mimeType = key.split("\\.")[1];
-                if (mimeType.equals("png")){
-                    mimeType = "image/png";
-                } else if (mimeType.equals("html")){
-                    mimeType = "text/html";
-                }
-                break;
-            }
-        }
         String encodedString = "";
-        if (found && validSize) {
-            GetObjectRequest s3Request
-                    = GetObjectRequest.builder()
-                            .bucket(bucketName)
-                            .key(key)
-                            .build();
-           byte[] buffer = new byte[10 * 1024 * 1024]; // 10Mb
-            try (ResponseInputStream<GetObjectResponse> s3Response
-                    = s3Client.getObject(s3Request)) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Ranges", "bytes");
 
-                buffer = s3Response.readAllBytes();
+        // Direkt per Key holen: Größe und Content-Type kommen aus den Response-Headern,
+        // der Body wird erst gelesen, wenn beides passt (kein ListObjects über den ganzen Bucket)
+        GetObjectRequest s3Request
+                = GetObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .range(s3Range)
+                        .ifNoneMatch(ifNoneMatch)
+                        .build();
+        try (ResponseInputStream<GetObjectResponse> s3Response
+                = s3Client.getObject(s3Request)) {
 
-            } catch (IOException ex) {
-                context.getLogger().log("IOException: " + ex);
+            GetObjectResponse metadata = s3Response.response();
+            mimeType = resolveMimeType(key, metadata.contentType());
+            if (metadata.eTag() != null) {
+                headers.put("ETag", metadata.eTag());
+            }
 
+            if (metadata.contentRange() != null) {
+                // Teilbereich: S3 hat nur die angefragten Bytes geschickt
+                encodedString = readBase64(s3Response);
+                headers.put("Content-Range", metadata.contentRange());
+                statusCode = 206;
+            } else if (metadata.contentLength() < maxSize) {
+                encodedString = readBase64(s3Response);
+            } else {
+                // Verbindung abbrechen statt den restlichen Body leer zu lesen
+                s3Response.abort();
+                statusCode = 413;
             }
 
-            encodedString = Base64.getEncoder().encodeToString(buffer);
+        } catch (NoSuchKeyException ex) {
+            context.getLogger().log("Not found: " + bucketName + "/" + key);
+            statusCode = 404;
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 304) {
+                headers.put("ETag", ifNoneMatch);
+                statusCode = 304;
+            } else if (ex.statusCode() == 416) {
+                // Bereich liegt hinter dem Objektende: Größe mitschicken, damit der Client neu anfragen kann
+                context.getLogger().log("Range not satisfiable: " + rangeHeader + " for " + bucketName + "/" + key);
+                long size = s3Client.headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName).key(key).build()).contentLength();
+                headers.put("Content-Range", "bytes */" + size);
+                statusCode = 416;
+            } else {
+                throw ex;
+            }
+        } catch (IOException ex) {
+            context.getLogger().log("IOException: " + ex);
 
         }
+
+        headers.put("Content-Type", mimeType);
         APIGatewayProxyResponseEvent response
                 = new APIGatewayProxyResponseEvent();
-        response.setStatusCode(200);
+        response.setStatusCode(statusCode);
         response.setBody(encodedString);
         response.withIsBase64Encoded(true);
-        response.setHeaders(java.util.Collections.singletonMap("Content-Type", mimeType));
+        response.setHeaders(headers);
         return response;
     }
 
-}
\ No newline at end of file
+    // {"keys": [...], "bucket": ...}
+    //   -> {"items": {key: {contentType, data}}, "missing": [...], "truncated": [...], "tooLarge": [...]}
+    // Alle GETs laufen parallel; die Antwort ist JSON, die Bilder darin Base64.
+    private APIGatewayProxyResponseEvent handleBatch(JSONObject bodyJSON, Context context) {
+        String bucketName = bodyJSON.optString("bucket", Config.resizedBucket());
+        JSONArray keysJSON = bodyJSON.getJSONArray("keys");
+        S3Client s3Client = AwsClients.s3();
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < keysJSON.length() && keys.size() < MAX_BATCH_KEYS; i++) {
+            String key = keysJSON.optString(i, "");
+            if (!key.isEmpty() && !keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        context.getLogger().log("Batch: " + keys.size() + " keys from " + bucketName);
+
+        List<CompletableFuture<BatchItem>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(CompletableFuture.supplyAsync(() -> fetchBatchItem(s3Client, bucketName, key), BATCH_POOL));
+        }
+
+        JSONObject items = new JSONObject();
+        JSONArray missing = new JSONArray();
+        JSONArray truncated = new JSONArray();
+        JSONArray tooLarge = new JSONArray();
+        long total = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            BatchItem item = futures.get(i).join();
+            if (item.tooLarge) {
+                tooLarge.put(keys.get(i));
+            } else if (item.data == null) {
+                missing.put(keys.get(i));
+            } else if (total + item.data.length() > MAX_BATCH_BYTES) {
+                truncated.put(keys.get(i));
+            } else {
+                total += item.data.length();
+                items.put(keys.get(i), new JSONObject()
+                        .put("contentType", item.contentType)
+                        .put("data", item.data));
+            }
+        }
+        // Keys über MAX_BATCH_KEYS hinaus ebenfalls nachladen lassen
+        for (int i = 0; i < keysJSON.length(); i++) {
+            String key = keysJSON.optString(i, "");
+            if (!key.isEmpty() && !keys.contains(key)) {
+                truncated.put(key);
+            }
+        }
+
+        String body = new JSONObject()
+                .put("items", items)
+                .put("missing", missing)
+                .put("truncated", truncated)
+                .put("tooLarge", tooLarge)
+                .toString();
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
+        response.setStatusCode(200);
+        response.setBody(body);
+        response.setHeaders(headers);
+        return response;
+    }
+
+    private static BatchItem fetchBatchItem(S3Client s3Client, String bucketName, String key) {
+        GetObjectRequest s3Request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        try (ResponseInputStream<GetObjectResponse> s3Response = s3Client.getObject(s3Request)) {
+            GetObjectResponse metadata = s3Response.response();
+            // Base64 macht aus 3 Bytes 4 Zeichen
+            if ((metadata.contentLength() + 2) / 3 * 4 > MAX_BATCH_BYTES) {
+                s3Response.abort();
+                return new BatchItem(null, null, true);
+            }
+            return new BatchItem(resolveMimeType(key, metadata.contentType()), readBase64(s3Response), false);
+        } catch (IOException | S3Exception ex) {
+            // NoSuchKey (Thumbnail noch nicht fertig) oder Lesefehler -> "missing"
+            return new BatchItem(null, null, false);
+        }
+    }
+
+    private static final class BatchItem {
+        final String contentType;
+        final String data;
+        // Passt auch allein nicht in eine Antwort
+        final boolean tooLarge;
+
+        BatchItem(String contentType, String data, boolean tooLarge) {
+            this.contentType = contentType;
+            this.data = data;
+            this.tooLarge = tooLarge;
+        }
+    }
+
+    // Nur ein einzelner Bereich: "bytes=a-b", "bytes=a-" oder "bytes=-n".
+    // Mehrere Bereiche oder ungültige Syntax -> null, dann gibt es das ganze Objekt (RFC 9110 erlaubt das).
+    static String toS3Range(String header) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = value.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix: die letzten n Bytes
+                long suffix = Long.parseLong(last);
+                return "bytes=-" + Math.min(suffix, MAX_RANGE_SIZE);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            end = Math.min(end, start + MAX_RANGE_SIZE - 1);
+            return "bytes=" + start + "-" + end;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    // API Gateway / Function URL liefern Header je nach Quelle in unterschiedlicher Schreibweise
+    private static String header(APIGatewayProxyRequestEvent request, String name) {
+        Map<String, String> headers = request.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    // Body lesen und kodieren getrennt gemessen: langsames S3 vs. große Objekte
+    private static String readBase64(ResponseInputStream<GetObjectResponse> s3Response) throws IOException {
+        byte[] bytes = Metrics.time(Metrics.S3_READ_BODY, s3Response::readAllBytes);
+        return Metrics.time(Metrics.BASE64_ENCODE, () -> Base64.getEncoder().encodeToString(bytes));
+    }
+
+    // S3 liefert "binary/octet-stream", wenn beim Upload kein Content-Type gesetzt wurde -> dann aus der Endung
+    private static String resolveMimeType(String key, String contentType) {
+        if (contentType != null && !contentType.isEmpty()
+                && !contentType.equals("binary/octet-stream")
+                && !contentType.equals("application/octet-stream")) {
+            return contentType;
+        }
+        return MimeTypes.forKey(key);
+    }
+
+}
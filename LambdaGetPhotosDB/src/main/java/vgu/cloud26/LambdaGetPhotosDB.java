@@ -1,14 +1,13 @@
 package vgu.cloud26;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.Base64;
-import java.util.Properties;
+import java.sql.SQLException;
+import java.util.Map;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
@@ -16,173 +15,151 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.rds.RdsUtilities;
-import software.amazon.awssdk.services.rds.model.GenerateAuthenticationTokenRequest;
-
- 
-
 public class LambdaGetPhotosDB implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
- 
-// das ist der Endpunkt der RDS-Instanz
+    // das ist der Endpunkt der RDS-Instanz
     private static final String RDS_INSTANCE_HOSTNAME
-
             = "database-1.cdq0ekg8q844.ap-southeast-2.rds.amazonaws.com";
 
     private static final int RDS_INSTANCE_PORT = 3306;
     // der Datenbank-Benutzername
-
     private static final String DB_USER = "admin";
     // die JDBC-URL für die Verbindung zur Datenbank
-
     private static final String JDBC_URL
-
             = "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME
-
             + ":" + RDS_INSTANCE_PORT + "/cloud26"; // Datenbankname auf windows console created
 
- 
-
-    @Override
-
-    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+    // Token und Verbindung bleiben über warme Aufrufe erhalten
+    private static final RdsConnectionProvider DB
+            = new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
 
-        LambdaLogger logger = context.getLogger();
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
-        JSONArray items = new JSONArray();
+    // Keyset-Pagination über den Primärschlüssel: jede Seite ist ein Index-Range-Scan,
+    // egal wie weit hinten sie liegt. Eine Zeile mehr holen, um zu wissen, ob es weitergeht.
+    // Liefert alles, was die Galerie braucht (Größe, Typ, Abmessungen, Thumbnail) - kein S3-Listing mehr nötig.
+    private static final String PAGE_QUERY
+            = "SELECT ID, Description, S3Key, SizeBytes, ContentType, Width, Height, ThumbnailKey"
+            + " FROM Photos WHERE ID > ? ORDER BY ID LIMIT ?";
 
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        Trace trace = Trace.begin(context, request);
+        Metrics metrics = Metrics.begin(context);
         try {
+            return handle(request, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
 
-            Class.forName("com.mysql.cj.jdbc.Driver");
-
-            Connection mySQLClient = 
-
-                    DriverManager.getConnection(JDBC_URL, 
-
-                            setMySqlConnectionProperties());
-
-            
-
-            //PreparedStatement st = mySQLClient.prepareStatement("SELECT 1");
-
-            //st.execute();
-
-            //result = "Success!";
-
-            PreparedStatement st = mySQLClient.prepareStatement(
-
-                    "SELECT * FROM Photos"
-
-            );
-
-             ResultSet rs = st.executeQuery();
-
-             while (rs.next()) {
-
-                    JSONObject item = new JSONObject();
-
-                    item.put("ID", rs.getInt("ID"));
-
-                    item.put("Description", rs.getString("Description"));
-
-                    item.put("S3Key", rs.getString("S3Key"));
-
-                    items.put(item);
-
-                }
+    private APIGatewayProxyResponseEvent handle(APIGatewayProxyRequestEvent request, Context context) {
 
-          
+        LambdaLogger logger = context.getLogger();
 
-        } catch (ClassNotFoundException ex) {
+        Map<String, String> params = request.getQueryStringParameters();
+        if (params == null) {
+            params = Map.of();
+        }
+        int pageSize = parseInt(params.get("limit"), DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        long cursor = parseLong(params.get("cursor"), 0L);
 
-            logger.log(ex.toString());
+        StringBuilder json = new StringBuilder();
+        int statusCode = 200;
 
+        try {
+            // Nur lesend, darf nach einem Verbindungsabbruch wiederholt werden.
+            // Ein Abbruch mitten im Lesen kann schon Teile geschrieben haben -> pro Versuch neu
+            DB.read(connection -> {
+                json.setLength(0);
+                writePage(connection, cursor, pageSize, json);
+                return null;
+            });
         } catch (Exception ex) {
-
             logger.log(ex.toString());
-
+            statusCode = 500;
+            json.setLength(0);
+            json.append(new JSONObject().put("error", ex.getMessage()).toString());
         }
 
-        String encodedResult = 
-
-                Base64.getEncoder()
-
-                        .encodeToString(items.toString().getBytes());
-
- 
-
-        APIGatewayProxyResponseEvent response
-
-                = new APIGatewayProxyResponseEvent();
-
-        response.setStatusCode(200);
-
-        response.setBody(encodedResult);
-
-        response.withIsBase64Encoded(true);
-
-        response.setHeaders(java.util.Collections
-
-                .singletonMap("Content-Type", "application/json"));
-
-        return response;
-
- 
-
+        // Kein Base64 mehr für unkomprimiertes JSON, nur komprimierte Bodies sind binär.
+        // CORS wie bei LambdaGetListOfObjects: index.html lädt die Galerie direkt von hier.
+        return JsonResponses.json(request, statusCode, json.toString(), Map.of(
+                "Access-Control-Allow-Origin", "*",
+                "Access-Control-Allow-Headers", "*",
+                "Access-Control-Allow-Methods", "GET, OPTIONS"
+        ));
     }
 
- 
-
-    private static Properties setMySqlConnectionProperties() throws Exception {
-
-        Properties mysqlConnectionProperties = new Properties();
-
-        mysqlConnectionProperties.setProperty("useSSL", "true");
-
-        mysqlConnectionProperties.setProperty("user", DB_USER);
-
-        mysqlConnectionProperties.setProperty("password", generateAuthToken()); // HERE
-
-        return mysqlConnectionProperties;
+    private static void writePage(Connection mySQLClient, long cursor, int pageSize, StringBuilder json)
+            throws SQLException {
+        try (PreparedStatement st = mySQLClient.prepareStatement(PAGE_QUERY,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            st.setLong(1, cursor);
+            st.setInt(2, pageSize + 1);
+            // Connector/J: Zeilen einzeln vom Server streamen statt das ganze ResultSet zu puffern
+            // (nur MySQL; andere Treiber, z.B. H2 im Lasttest, lehnen negative Fetch-Größen ab)
+            if (mySQLClient.getMetaData().getURL().startsWith("jdbc:mysql:")) {
+                st.setFetchSize(Integer.MIN_VALUE);
+            }
+
+            try (ResultSet rs = Metrics.time(Metrics.JDBC_QUERY, st::executeQuery)) {
+                JSONWriter writer = new JSONWriter(json);
+                writer.object();
+                writer.key("items");
+                writer.array();
+
+                int rows = 0;
+                long lastId = cursor;
+                boolean hasMore = false;
+                while (rs.next()) {
+                    if (rows == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    lastId = rs.getLong("ID");
+                    writer.object();
+                    writer.key("ID").value(lastId);
+                    writer.key("Description").value(rs.getString("Description"));
+                    writer.key("S3Key").value(rs.getString("S3Key"));
+                    writer.key("SizeBytes").value(rs.getObject("SizeBytes"));
+                    writer.key("ContentType").value(rs.getString("ContentType"));
+                    writer.key("Width").value(rs.getObject("Width"));
+                    writer.key("Height").value(rs.getObject("Height"));
+                    writer.key("ThumbnailKey").value(rs.getString("ThumbnailKey"));
+                    writer.endObject();
+                    rows++;
+                }
 
+                writer.endArray();
+                writer.key("nextCursor").value(hasMore ? lastId : null);
+                writer.endObject();
+            }
+        }
     }
 
- 
-
-    private static String generateAuthToken() throws Exception {
-
- 
-
-        RdsUtilities rdsUtilities = RdsUtilities.builder().build();
-
- 
-
-        // Generate the authentication token
-
-        String authToken
-
-                = rdsUtilities.generateAuthenticationToken(
-
-                        GenerateAuthenticationTokenRequest.builder()
-
-                                .hostname(RDS_INSTANCE_HOSTNAME)
-
-                                .port(RDS_INSTANCE_PORT)
-
-                                .username(DB_USER)
-
-                                .region(Region.AP_SOUTHEAST_2)
-
-                                .credentialsProvider(DefaultCredentialsProvider.create())
-
-                                .build());
-
-        return authToken;
-
- 
-
+    private static int parseInt(String value, int defaultValue, int min, int max) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(min, Math.min(Integer.parseInt(value.trim()), max));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
-}
\ No newline at end of file
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package vgu.cloud26;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Lambda-Invoke-API (POST /2015-03-31/functions/{name}/invocations) vor dem LambdaPool.
+// Damit rufen die Orchestratoren ihre Unter-Lambdas über den normalen LambdaClient auf (CLOUD26_LAMBDA_ENDPOINT).
+//   RequestResponse -> 200 + Payload, Fehler im Handler -> 200 + X-Amz-Function-Error: Unhandled
+//   Event           -> 202 sofort, Ausführung im Hintergrund
+final class FakeLambdaServer implements AutoCloseable {
+
+    private static final String PATH_PREFIX = "/2015-03-31/functions/";
+
+    private final LambdaPool pool;
+    private final long overheadMillis;
+    private final HttpServer server;
+    private final ExecutorService requestPool = Executors.newCachedThreadPool(daemon("fake-lambda"));
+    private final ExecutorService eventPool = Executors.newCachedThreadPool(daemon("fake-lambda-event"));
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+
+    // overheadMillis simuliert die Latenz des Invoke-Aufrufs selbst (Netz + Lambda-Frontend)
+    FakeLambdaServer(LambdaPool pool, long overheadMillis) throws IOException {
+        this.pool = pool;
+        this.overheadMillis = overheadMillis;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 200);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(requestPool);
+        this.server.start();
+    }
+
+    String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // Anzahl noch laufender Event-Aufrufe (z.B. asynchrone Resizes)
+    int pendingEvents() {
+        return pendingEvents.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getRawPath();
+            if (!"POST".equals(exchange.getRequestMethod()) || !path.startsWith(PATH_PREFIX)
+                    || !path.endsWith("/invocations")) {
+                send(exchange, 400, error("InvalidRequestContentException", "Unsupported request " + path));
+                return;
+            }
+            String functionName = functionName(path);
+            if (!pool.exists(functionName)) {
+                exchange.getResponseHeaders().set("x-amzn-ErrorType", "ResourceNotFoundException");
+                send(exchange, 404, error("ResourceNotFoundException", "Function not found: " + functionName));
+                return;
+            }
+
+            String payload = readBody(exchange.getRequestBody());
+            sleep(overheadMillis);
+
+            if ("Event".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-Amz-Invocation-Type"))) {
+                pendingEvents.incrementAndGet();
+                eventPool.execute(() -> {
+                    try {
+                        pool.invoke(functionName, payload);
+                    } catch (Exception e) {
+                        System.err.println("Event-Aufruf von " + functionName + " fehlgeschlagen: " + e);
+                    } finally {
+                        pendingEvents.decrementAndGet();
+                    }
+                });
+                send(exchange, 202, new byte[0]);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("X-Amz-Executed-Version", "$LATEST");
+            try {
+                String result = pool.invoke(functionName, payload);
+                send(exchange, 200, result.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                exchange.getResponseHeaders().set("X-Amz-Function-Error", "Unhandled");
+                send(exchange, 200, error(e.getClass().getName(), String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    // Name, ARN oder Name:Alias - für den Pool zählt nur der Funktionsname
+    private static String functionName(String path) {
+        String encoded = path.substring(PATH_PREFIX.length(), path.length() - "/invocations".length());
+        String name = URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+        int functionMarker = name.indexOf(":function:");
+        if (functionMarker >= 0) {
+            name = name.substring(functionMarker + ":function:".length());
+        }
+        int qualifier = name.indexOf(':');
+        return qualifier >= 0 ? name.substring(0, qualifier) : name;
+    }
+
+    private static byte[] error(String type, String message) {
+        return new JSONObject()
+                .put("errorType", type)
+                .put("errorMessage", message)
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        requestPool.shutdownNow();
+        eventPool.shutdownNow();
+    }
+}
@@ -0,0 +1,566 @@
+package vgu.cloud26;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// S3 im Speicher, Path-Style (http://localhost:port/bucket/key), gerade genug für unsere Lambdas:
+//   Objekte:   PUT, GET (Range, If-None-Match), HEAD, DELETE, CopyObject (PUT mit x-amz-copy-source)
+//   Bucket:    ListObjectsV2 (prefix, start-after, continuation-token, max-keys), DeleteObjects (POST ?delete)
+//   Multipart: CreateMultipartUpload, UploadPart, CompleteMultipartUpload, AbortMultipartUpload
+// Buckets entstehen beim ersten Zugriff. Signaturen werden nicht geprüft.
+final class FakeS3Server implements AutoCloseable {
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+    private static final String XMLNS = " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"";
+
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private final HttpServer server;
+    private final ExecutorService requestPool = Executors.newCachedThreadPool(FakeLambdaServer.daemon("fake-s3"));
+
+    // latencyMillis wird jedem Request vorangestellt (S3-Latenz im selben AZ liegt bei 10-30 ms)
+    FakeS3Server(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 200);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(requestPool);
+        this.server.start();
+    }
+
+    String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // Direkter Zugriff für das Seeding (z.B. index.html), ohne HTTP
+    void put(String bucket, String key, String contentType, byte[] data) {
+        bucket(bucket).put(key, new StoredObject(data, contentType, Map.of()));
+    }
+
+    int objectCount(String bucket) {
+        return bucket(bucket).size();
+    }
+
+    private NavigableMap<String, StoredObject> bucket(String name) {
+        return buckets.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            FakeLambdaServer.sleep(latencyMillis);
+
+            String path = exchange.getRequestURI().getRawPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String trimmed = path.startsWith("/") ? path.substring(1) : path;
+            int slash = trimmed.indexOf('/');
+            String bucketName = decode(slash < 0 ? trimmed : trimmed.substring(0, slash));
+            String key = slash < 0 || slash == trimmed.length() - 1 ? null : decode(trimmed.substring(slash + 1));
+            String method = exchange.getRequestMethod();
+
+            if (bucketName.isEmpty()) {
+                sendError(exchange, 400, "InvalidRequest", "Bucket fehlt", null);
+            } else if (key == null) {
+                handleBucket(exchange, method, bucketName, query);
+            } else if (query.containsKey("uploads") || query.containsKey("uploadId")) {
+                handleMultipart(exchange, method, bucketName, key, query);
+            } else {
+                handleObject(exchange, method, bucketName, key);
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalError", String.valueOf(e.getMessage()), null);
+        }
+    }
+
+    // ===== Objekte =====
+    private void handleObject(HttpExchange exchange, String method, String bucketName, String key) throws IOException {
+        NavigableMap<String, StoredObject> bucket = bucket(bucketName);
+        switch (method) {
+            case "PUT": {
+                String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                if (copySource != null) {
+                    copyObject(exchange, bucket, key, copySource);
+                    return;
+                }
+                byte[] data = readPayload(exchange);
+                StoredObject object = new StoredObject(data, exchange.getRequestHeaders().getFirst("Content-Type"),
+                        userMetadata(exchange.getRequestHeaders()));
+                bucket.put(key, object);
+                exchange.getResponseHeaders().set("ETag", object.etag);
+                send(exchange, 200, new byte[0], null);
+                return;
+            }
+            case "GET":
+            case "HEAD": {
+                StoredObject object = bucket.get(key);
+                if (object == null) {
+                    sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.", key);
+                    return;
+                }
+                getObject(exchange, object, "HEAD".equals(method));
+                return;
+            }
+            case "DELETE":
+                bucket.remove(key);
+                send(exchange, 204, new byte[0], null);
+                return;
+            default:
+                sendError(exchange, 405, "MethodNotAllowed", method, key);
+        }
+    }
+
+    // Quelle als [/]bucket/key (URL-kodiert); Inhalt, Content-Type und Metadaten werden übernommen
+    private void copyObject(HttpExchange exchange, NavigableMap<String, StoredObject> bucket, String key,
+            String copySource) throws IOException {
+        String source = decode(copySource.startsWith("/") ? copySource.substring(1) : copySource);
+        int slash = source.indexOf('/');
+        StoredObject original = slash < 0 ? null
+                : bucket(source.substring(0, slash)).get(source.substring(slash + 1));
+        if (original == null) {
+            sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.", source);
+            return;
+        }
+        StoredObject object = new StoredObject(original.data, original.contentType, original.metadata);
+        bucket.put(key, object);
+        String xml = XML_HEADER + "<CopyObjectResult" + XMLNS + "><ETag>" + xml(object.etag) + "</ETag>"
+                + "<LastModified>" + object.lastModified + "</LastModified></CopyObjectResult>";
+        send(exchange, 200, xml.getBytes(StandardCharsets.UTF_8), "application/xml");
+    }
+
+    private void getObject(HttpExchange exchange, StoredObject object, boolean head) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", object.etag);
+        headers.set("Last-Modified", HTTP_DATE.format(object.lastModified));
+        headers.set("Accept-Ranges", "bytes");
+        if (object.contentType != null) {
+            headers.set("Content-Type", object.contentType);
+        }
+        object.metadata.forEach((name, value) -> headers.set("x-amz-meta-" + name, value));
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.equals(object.etag))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        int size = object.data.length;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        int end = size - 1;
+        int status = 200;
+        if (range != null && range.startsWith("bytes=") && !range.contains(",")) {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    start = (int) Math.max(0, size - suffix);
+                } else {
+                    start = (int) Math.min(Long.parseLong(spec.substring(0, dash)), Integer.MAX_VALUE);
+                    if (dash < spec.length() - 1) {
+                        end = (int) Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1L);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                start = 0;
+                end = size - 1;
+            }
+            if (start >= size || start > end) {
+                headers.set("Content-Range", "bytes */" + size);
+                sendError(exchange, 416, "InvalidRange", "The requested range is not satisfiable", null);
+                return;
+            }
+            status = 206;
+            headers.set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        }
+
+        int length = size == 0 ? 0 : end - start + 1;
+        if (head) {
+            headers.set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        if (length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(object.data, start, length);
+            }
+        }
+    }
+
+    // ===== Bucket: Listing und DeleteObjects =====
+    private void handleBucket(HttpExchange exchange, String method, String bucketName, Map<String, String> query)
+            throws IOException {
+        NavigableMap<String, StoredObject> bucket = bucket(bucketName);
+        if ("POST".equals(method) && query.containsKey("delete")) {
+            deleteObjects(exchange, bucket);
+        } else if ("GET".equals(method)) {
+            listObjects(exchange, bucketName, bucket, query);
+        } else if ("HEAD".equals(method) || "PUT".equals(method)) {
+            send(exchange, 200, new byte[0], null);
+        } else {
+            sendError(exchange, 405, "MethodNotAllowed", method, null);
+        }
+    }
+
+    private void listObjects(HttpExchange exchange, String bucketName, NavigableMap<String, StoredObject> bucket,
+            Map<String, String> query) throws IOException {
+        String prefix = query.getOrDefault("prefix", "");
+        boolean urlEncoding = "url".equals(query.get("encoding-type"));
+        int maxKeys = 1000;
+        try {
+            maxKeys = Math.max(0, Math.min(1000, Integer.parseInt(query.getOrDefault("max-keys", "1000"))));
+        } catch (NumberFormatException ignored) {
+            // Standard 1000 wie S3
+        }
+
+        String after = null;
+        if (query.containsKey("continuation-token")) {
+            after = new String(Base64.getUrlDecoder().decode(query.get("continuation-token")), StandardCharsets.UTF_8);
+        } else if (query.containsKey("start-after")) {
+            after = query.get("start-after");
+        }
+        NavigableMap<String, StoredObject> candidates = after == null
+                ? (prefix.isEmpty() ? bucket : bucket.tailMap(prefix, true))
+                : bucket.tailMap(after.compareTo(prefix) < 0 ? prefix : after, after.compareTo(prefix) < 0);
+
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents><Key>").append(xml(listKey(key, urlEncoding))).append("</Key>")
+                    .append("<LastModified>").append(object.lastModified).append("</LastModified>")
+                    .append("<ETag>").append(xml(object.etag)).append("</ETag>")
+                    .append("<Size>").append(object.data.length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            lastKey = key;
+            count++;
+        }
+
+        StringBuilder xml = new StringBuilder(XML_HEADER)
+                .append("<ListBucketResult").append(XMLNS).append(">")
+                .append("<Name>").append(xml(bucketName)).append("</Name>")
+                .append("<Prefix>").append(xml(listKey(prefix, urlEncoding))).append("</Prefix>")
+                .append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (urlEncoding) {
+            xml.append("<EncodingType>url</EncodingType>");
+        }
+        if (query.containsKey("continuation-token")) {
+            xml.append("<ContinuationToken>").append(xml(query.get("continuation-token"))).append("</ContinuationToken>");
+        }
+        if (truncated) {
+            String token = Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+            xml.append("<NextContinuationToken>").append(token).append("</NextContinuationToken>");
+        }
+        xml.append(contents).append("</ListBucketResult>");
+        send(exchange, 200, xml.toString().getBytes(StandardCharsets.UTF_8), "application/xml");
+    }
+
+    private void deleteObjects(HttpExchange exchange, NavigableMap<String, StoredObject> bucket) throws IOException {
+        Document document = parseXml(readPayload(exchange));
+        boolean quiet = "true".equals(text(document.getDocumentElement(), "Quiet"));
+        StringBuilder xml = new StringBuilder(XML_HEADER).append("<DeleteResult").append(XMLNS).append(">");
+        NodeList objects = document.getElementsByTagName("Object");
+        for (int i = 0; i < objects.getLength(); i++) {
+            String key = text((Element) objects.item(i), "Key");
+            if (key == null) {
+                continue;
+            }
+            bucket.remove(key);
+            if (!quiet) {
+                xml.append("<Deleted><Key>").append(xml(key)).append("</Key></Deleted>");
+            }
+        }
+        xml.append("</DeleteResult>");
+        send(exchange, 200, xml.toString().getBytes(StandardCharsets.UTF_8), "application/xml");
+    }
+
+    // ===== Multipart =====
+    private void handleMultipart(HttpExchange exchange, String method, String bucketName, String key,
+            Map<String, String> query) throws IOException {
+        if ("POST".equals(method) && query.containsKey("uploads")) {
+            String uploadId = UUID.randomUUID().toString();
+            uploads.put(uploadId, new MultipartUpload(bucketName, key,
+                    exchange.getRequestHeaders().getFirst("Content-Type"), userMetadata(exchange.getRequestHeaders())));
+            String xml = XML_HEADER + "<InitiateMultipartUploadResult" + XMLNS + ">"
+                    + "<Bucket>" + xml(bucketName) + "</Bucket><Key>" + xml(key) + "</Key>"
+                    + "<UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>";
+            send(exchange, 200, xml.getBytes(StandardCharsets.UTF_8), "application/xml");
+            return;
+        }
+
+        MultipartUpload upload = uploads.get(query.get("uploadId"));
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist.", key);
+            return;
+        }
+
+        switch (method) {
+            case "PUT": {
+                int partNumber = Integer.parseInt(query.getOrDefault("partNumber", "0"));
+                byte[] data = readPayload(exchange);
+                upload.parts.put(partNumber, data);
+                exchange.getResponseHeaders().set("ETag", md5Etag(data));
+                exchange.getResponseHeaders().set("x-amz-checksum-crc32", crc32(data));
+                send(exchange, 200, new byte[0], null);
+                return;
+            }
+            case "POST": {
+                Document document = parseXml(readPayload(exchange));
+                NodeList parts = document.getElementsByTagName("Part");
+                ByteArrayOutputStream combined = new ByteArrayOutputStream();
+                for (int i = 0; i < parts.getLength(); i++) {
+                    int partNumber = Integer.parseInt(text((Element) parts.item(i), "PartNumber"));
+                    byte[] data = upload.parts.get(partNumber);
+                    if (data == null) {
+                        sendError(exchange, 400, "InvalidPart", "Part " + partNumber + " fehlt", key);
+                        return;
+                    }
+                    combined.write(data);
+                }
+                uploads.remove(query.get("uploadId"));
+                StoredObject object = new StoredObject(combined.toByteArray(), upload.contentType, upload.metadata);
+                bucket(upload.bucket).put(upload.key, object);
+                String xml = XML_HEADER + "<CompleteMultipartUploadResult" + XMLNS + ">"
+                        + "<Location>" + xml(endpoint() + "/" + upload.bucket + "/" + upload.key) + "</Location>"
+                        + "<Bucket>" + xml(upload.bucket) + "</Bucket><Key>" + xml(upload.key) + "</Key>"
+                        + "<ETag>" + xml(object.etag) + "</ETag></CompleteMultipartUploadResult>";
+                send(exchange, 200, xml.getBytes(StandardCharsets.UTF_8), "application/xml");
+                return;
+            }
+            case "DELETE":
+                uploads.remove(query.get("uploadId"));
+                send(exchange, 204, new byte[0], null);
+                return;
+            default:
+                sendError(exchange, 405, "MethodNotAllowed", method, key);
+        }
+    }
+
+    // ===== Helpers =====
+
+    // Mit Checksummen-Trailer (Multipart mit CRC32) schickt das SDK den Body als aws-chunked
+    private static byte[] readPayload(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean chunked = (sha != null && sha.startsWith("STREAMING-"))
+                || (encoding != null && encoding.contains("aws-chunked"));
+        return chunked ? decodeAwsChunked(raw) : raw;
+    }
+
+    private static byte[] decodeAwsChunked(byte[] raw) throws IOException {
+        InputStream in = new ByteArrayInputStream(raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        while (true) {
+            String header = readLine(in);
+            if (header == null) {
+                break;
+            }
+            int semicolon = header.indexOf(';');
+            String hex = (semicolon < 0 ? header : header.substring(0, semicolon)).trim();
+            if (hex.isEmpty()) {
+                continue;
+            }
+            int size = Integer.parseInt(hex, 16);
+            if (size == 0) {
+                break; // danach folgen nur noch Trailer (Checksumme)
+            }
+            out.write(in.readNBytes(size));
+            readLine(in); // CRLF nach dem Chunk
+        }
+        return out.toByteArray();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static Map<String, String> userMetadata(Headers headers) {
+        Map<String, String> metadata = new TreeMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey().toLowerCase();
+            if (name.startsWith("x-amz-meta-") && !header.getValue().isEmpty()) {
+                metadata.put(name.substring("x-amz-meta-".length()), header.getValue().get(0));
+            }
+        }
+        return metadata;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body, String contentType) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.getResponseHeaders().set("x-amz-request-id", UUID.randomUUID().toString());
+        boolean noBody = body.length == 0 || "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, noBody ? -1 : body.length);
+        if (!noBody) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String key)
+            throws IOException {
+        String xml = XML_HEADER + "<Error><Code>" + code + "</Code><Message>" + xml(message) + "</Message>"
+                + (key == null ? "" : "<Key>" + xml(key) + "</Key>") + "</Error>";
+        send(exchange, status, xml.getBytes(StandardCharsets.UTF_8), "application/xml");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+            query.put(name, eq < 0 ? "" : decode(pair.substring(eq + 1)));
+        }
+        return query;
+    }
+
+    // Das SDK kodiert Leerzeichen als %20, ein rohes "+" ist ein Plus und kein Leerzeichen
+    private static String decode(String value) {
+        return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static String listKey(String key, boolean urlEncoding) {
+        return urlEncoding ? URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20") : key;
+    }
+
+    private static String xml(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static Document parseXml(byte[] data) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(data));
+        } catch (Exception e) {
+            throw new IOException("Ungültiges XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static String text(Element parent, String tag) {
+        NodeList nodes = parent.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    static String md5Etag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+            StringBuilder hex = new StringBuilder("\"");
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        requestPool.shutdownNow();
+    }
+
+    private static final class StoredObject {
+        final byte[] data;
+        final String contentType;
+        final Map<String, String> metadata;
+        final String etag;
+        final Instant lastModified = Instant.now();
+
+        StoredObject(byte[] data, String contentType, Map<String, String> metadata) {
+            this.data = data;
+            this.contentType = contentType;
+            this.metadata = metadata;
+            this.etag = md5Etag(data);
+        }
+    }
+
+    private static final class MultipartUpload {
+        final String bucket;
+        final String key;
+        final String contentType;
+        final Map<String, String> metadata;
+        final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        MultipartUpload(String bucket, String key, String contentType, Map<String, String> metadata) {
+            this.bucket = bucket;
+            this.key = key;
+            this.contentType = contentType;
+            this.metadata = metadata;
+        }
+    }
+}
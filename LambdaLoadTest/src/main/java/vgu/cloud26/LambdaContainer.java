@@ -0,0 +1,88 @@
+package vgu.cloud26;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Ein "Container" einer Funktion: eigener Classloader, also eigene statische Felder
+// (SDK-Clients, DB-Verbindung, Caches, Thread-Pools) wie eine echte Lambda-Ausführungsumgebung.
+// Ein Container bearbeitet immer nur einen Aufruf gleichzeitig (siehe LambdaPool).
+final class LambdaContainer implements AutoCloseable {
+
+    private static final URL[] CLASSPATH = classpath();
+
+    private final URLClassLoader loader;
+    private final Method invoke;
+    final long initMillis;
+
+    LambdaContainer(String functionName, String handlerClass, boolean verbose, Consumer<String> logSink)
+            throws Exception {
+        long start = System.nanoTime();
+        // Parent ist der Platform-Loader: nichts aus dem Harness wird mit dem Container geteilt
+        this.loader = new URLClassLoader("lambda-" + functionName, CLASSPATH, ClassLoader.getPlatformClassLoader());
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(loader);
+        try {
+            // H2 registriert sich beim DriverManager nur für den Classloader, der ihn geladen hat
+            Class.forName("org.h2.Driver", true, loader);
+            Class<?> runtime = Class.forName(LocalRuntime.class.getName(), true, loader);
+            runtime.getMethod("init", String.class, String.class, boolean.class, Consumer.class)
+                    .invoke(null, handlerClass, functionName, verbose, logSink);
+            this.invoke = runtime.getMethod("invoke", String.class, String.class);
+        } catch (InvocationTargetException e) {
+            loader.close();
+            throw unwrap(e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+        this.initMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    String invoke(String payload, String requestId) throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(loader);
+        try {
+            return (String) invoke.invoke(null, payload, requestId);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        loader.close();
+    }
+
+    private static Exception unwrap(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+    // Funktioniert mit "java -jar loadtest.jar" und mit "java -cp ..." (nicht mit exec:java)
+    private static URL[] classpath() {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                urls.add(Paths.get(entry).toAbsolutePath().toUri().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Ungültiger Classpath-Eintrag: " + entry, e);
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
@@ -0,0 +1,140 @@
+package vgu.cloud26;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+// Verwaltet die Container pro Funktion wie der Lambda-Dienst:
+// warme Container werden wiederverwendet (zuletzt benutzter zuerst), fehlt einer, gibt es einen Cold Start.
+// maxContainers entspricht der reservierten Concurrency; darüber wird gewartet statt mit 429 gedrosselt.
+final class LambdaPool {
+
+    private final Map<String, Function> functions = new LinkedHashMap<>();
+    private final int maxContainers;
+    private final boolean verbose;
+    private final TraceReport traces;
+
+    LambdaPool(int maxContainers, boolean verbose, TraceReport traces) {
+        this.maxContainers = maxContainers;
+        this.verbose = verbose;
+        this.traces = traces;
+    }
+
+    LambdaPool register(String functionName, String handlerClass) {
+        functions.put(functionName, new Function(functionName, handlerClass, maxContainers));
+        return this;
+    }
+
+    boolean exists(String functionName) {
+        return functions.containsKey(functionName);
+    }
+
+    Map<String, Function> functions() {
+        return functions;
+    }
+
+    String invoke(String functionName, String payload) throws Exception {
+        Function function = functions.get(functionName);
+        if (function == null) {
+            throw new IllegalArgumentException("Function not found: " + functionName);
+        }
+
+        function.slots.acquire();
+        LambdaContainer container = null;
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            container = function.take();
+            if (container == null) {
+                container = new LambdaContainer(function.name, function.handlerClass, verbose,
+                        line -> dispatchLog(function, line));
+                function.coldStarts.incrementAndGet();
+                function.initMillis.addAndGet(container.initMillis);
+            }
+            String result = container.invoke(payload, UUID.randomUUID().toString());
+            error = false;
+            return result;
+        } finally {
+            function.latencies.record(System.nanoTime() - start, error);
+            if (container != null) {
+                function.release(container);
+            }
+            function.slots.release();
+        }
+    }
+
+    // Metrics (EMF) -> Stufen der Funktion, Trace (Spans) -> gemeinsamer TraceReport
+    private void dispatchLog(Function function, String line) {
+        if (line.startsWith("{\"_aws\"")) {
+            function.recordStages(line);
+        } else {
+            traces.add(line);
+        }
+    }
+
+    void resetStats() {
+        for (Function function : functions.values()) {
+            function.latencies.reset();
+            function.coldStarts.set(0);
+            function.initMillis.set(0);
+            function.resetStages();
+        }
+        traces.reset();
+    }
+
+    static final class Function {
+        final String name;
+        final String handlerClass;
+        final Semaphore slots;
+        final LatencyRecorder latencies = new LatencyRecorder();
+        final AtomicInteger coldStarts = new AtomicInteger();
+        final AtomicLong initMillis = new AtomicLong();
+        private final Deque<LambdaContainer> idle = new ArrayDeque<>();
+        private final Map<String, LatencyRecorder> stages = new TreeMap<>();
+
+        Function(String name, String handlerClass, int maxContainers) {
+            this.name = name;
+            this.handlerClass = handlerClass;
+            this.slots = new Semaphore(maxContainers, true);
+        }
+
+        // Eine EMF-Zeile von Metrics.flush(): jede Stufe (xxxMs außer TotalMs) als ein Messwert pro Aufruf
+        private void recordStages(String emf) {
+            JSONObject json = new JSONObject(emf);
+            for (String name : json.keySet()) {
+                if (name.endsWith("Ms") && !name.equals("TotalMs")) {
+                    long nanos = (long) (json.getDouble(name) * 1_000_000);
+                    stage(name.substring(0, name.length() - 2)).record(nanos, false);
+                }
+            }
+        }
+
+        private synchronized LatencyRecorder stage(String name) {
+            return stages.computeIfAbsent(name, n -> new LatencyRecorder());
+        }
+
+        synchronized Map<String, LatencyRecorder> stages() {
+            return new TreeMap<>(stages);
+        }
+
+        private synchronized void resetStages() {
+            stages.clear();
+        }
+
+        private synchronized LambdaContainer take() {
+            return idle.pollFirst();
+        }
+
+        private synchronized void release(LambdaContainer container) {
+            idle.addFirst(container);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package vgu.cloud26;
+
+import java.util.Arrays;
+
+// Sammelt Latenzen (Nanosekunden) und Fehler für eine Operation bzw. Funktion.
+// Ein Lauf erzeugt höchstens einige hunderttausend Werte, ein wachsendes long[] reicht.
+final class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+
+    synchronized void record(long nanos, boolean error) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    synchronized void reset() {
+        count = 0;
+        errors = 0;
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted, errors);
+    }
+
+    static final class Snapshot {
+        final long[] sorted;
+        final int errors;
+
+        Snapshot(long[] sorted, int errors) {
+            this.sorted = sorted;
+            this.errors = errors;
+        }
+
+        int count() {
+            return sorted.length;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+        }
+
+        double maxMillis() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package vgu.cloud26;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Lokaler End-to-End-Lasttest ohne AWS: FakeS3Server, FakeLambdaServer (+ LambdaPool) und H2 (LocalDatabase).
+// Die Handler laufen unverändert; umgebogen wird nur über die CLOUD26_*-Overrides aus Config.
+//
+// Einstellungen (System-Properties, alle optional):
+//   harness.threads          gleichzeitige Clients                               (4)
+//   harness.durationSeconds  Messdauer                                           (20)
+//   harness.warmupSeconds    Aufwärmphase, zählt nicht in die Statistik          (5)
+//   harness.mix              Gewichte der Operationen
+//                            (upload=2,list=1,gallery=2,get=3,thumbnails=2,delete=1,page=1)
+//                            zusätzlich: resize (LambdaResizer erneut für ein vorhandenes Bild, wie ein Retry)
+//   harness.uploadMode       sync | fused | async (Pipeline des Orchestrators)    (fused)
+//   harness.imageWidth       Breite der Testbilder in Pixeln                      (1600)
+//   harness.seedImages       Bilder, die vor dem Lauf hochgeladen werden          (20)
+//   harness.duplicateRatio   Anteil der Uploads mit schon bekanntem Inhalt        (0.3)
+//   harness.maxContainers    Container pro Funktion (reservierte Concurrency)     (threads * 2)
+//   harness.s3LatencyMs      künstliche Latenz pro S3-Request                     (0)
+//   harness.lambdaOverheadMs künstliche Latenz pro Lambda-Invoke                  (0)
+//   harness.indexHtml        Seite für LambdaEntryPoint                           (index.html)
+//   harness.verbose          Logs der Handler ausgeben                            (false)
+//   harness.traceLog         Span-Zeilen (Trace) in diese Datei, für TraceReport  (-)
+public final class LoadTest {
+
+    private static final String[][] FUNCTIONS = {
+        {"LambdaEntryPoint", "vgu.cloud26.LambdaEntryPoint"},
+        {"LambdaResizeOrchestrator", "vgu.cloud26.LambdaResizeOrchestrator"},
+        {"LambdaUploadObject", "vgu.cloud26.LambdaUploadObject"},
+        {"LambdaResizer", "vgu.cloud26.LambdaResizer"},
+        {"LambdaGetObject", "vgu.cloud26.LambdaGetObject"},
+        {"LambdaGetListOfObjects", "vgu.cloud26.LambdaGetListOfObjects"},
+        {"LambdaGetPhotosDB", "vgu.cloud26.LambdaGetPhotosDB"},
+        {"LambdaDeleteOrchestrator", "vgu.cloud26.LambdaDeleteOrchestrator"},
+    };
+
+    private static final String DEFAULT_MIX = "upload=2,list=1,gallery=2,get=3,thumbnails=2,delete=1,page=1";
+    private static final String RESIZED_PREFIX = "resized-";
+    private static final int THUMBNAIL_BATCH = 20;
+
+    private final LambdaPool pool;
+    private final Map<String, Integer> mix;
+    private final int mixTotal;
+    private final String uploadMode;
+    private final List<String> images;
+    private final double duplicateRatio;
+    private final Map<String, LatencyRecorder> operations = new LinkedHashMap<>();
+    // Keys, die (noch) existieren - Ziel für get, thumbnails und delete
+    private final List<String> keys = new ArrayList<>();
+    // IDs der Duplikat-Zeilen (geteilter sha256/-Key) - gelöscht wird nur über die ID
+    private final List<Long> duplicateIds = new ArrayList<>();
+    private final AtomicLong keyCounter = new AtomicLong();
+
+    private LoadTest(LambdaPool pool, Map<String, Integer> mix, String uploadMode, List<String> images,
+            double duplicateRatio) {
+        this.pool = pool;
+        this.mix = mix;
+        this.mixTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.uploadMode = uploadMode;
+        this.images = images;
+        this.duplicateRatio = duplicateRatio;
+        for (String operation : mix.keySet()) {
+            operations.put(operation, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = intProperty("harness.threads", 4);
+        int durationSeconds = intProperty("harness.durationSeconds", 20);
+        int warmupSeconds = intProperty("harness.warmupSeconds", 5);
+        int imageWidth = intProperty("harness.imageWidth", 1600);
+        int seedImages = intProperty("harness.seedImages", 20);
+        int maxContainers = intProperty("harness.maxContainers", threads * 2);
+        boolean verbose = Boolean.getBoolean("harness.verbose");
+        String uploadMode = System.getProperty("harness.uploadMode", "fused");
+        Map<String, Integer> mix = parseMix(System.getProperty("harness.mix", DEFAULT_MIX));
+
+        String traceLog = System.getProperty("harness.traceLog");
+        TraceReport traces = new TraceReport(traceLog == null || traceLog.isBlank() ? null : Paths.get(traceLog));
+
+        try (LocalDatabase database = new LocalDatabase();
+             FakeS3Server s3 = new FakeS3Server(intProperty("harness.s3LatencyMs", 0))) {
+
+            LambdaPool pool = new LambdaPool(maxContainers, verbose, traces);
+            for (String[] function : FUNCTIONS) {
+                pool.register(function[0], function[1]);
+            }
+
+            try (FakeLambdaServer lambda = new FakeLambdaServer(pool, intProperty("harness.lambdaOverheadMs", 0))) {
+                // Muss vor dem ersten Container gesetzt sein: AwsClients/RdsConnectionProvider lesen beim Laden
+                System.setProperty(Config.REGION, "us-east-1");
+                System.setProperty(Config.S3_ENDPOINT, s3.endpoint());
+                System.setProperty(Config.LAMBDA_ENDPOINT, lambda.endpoint());
+                System.setProperty(Config.JDBC_URL, database.jdbcUrl());
+                System.setProperty(Config.DB_USER, LocalDatabase.USER);
+                System.setProperty(Config.DB_PASSWORD, LocalDatabase.PASSWORD);
+                System.setProperty("aws.accessKeyId", "loadtest");
+                System.setProperty("aws.secretAccessKey", "loadtest");
+
+                s3.put(Config.originalBucket(), "index.html", "text/html", indexHtml());
+
+                System.out.printf("S3 %s, Lambda %s, DB %s%n", s3.endpoint(), lambda.endpoint(), database.jdbcUrl());
+                System.out.printf("threads=%d warmup=%ds duration=%ds uploadMode=%s image=%dpx maxContainers=%d%n",
+                        threads, warmupSeconds, durationSeconds, uploadMode, imageWidth, maxContainers);
+                System.out.println("mix " + mix);
+
+                LoadTest test = new LoadTest(pool, mix, uploadMode, testImages(imageWidth),
+                        Double.parseDouble(System.getProperty("harness.duplicateRatio", "0.3")));
+                test.seed(seedImages);
+
+                test.run(threads, warmupSeconds);
+                test.resetStats();
+                long start = System.nanoTime();
+                test.run(threads, durationSeconds);
+                double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+                test.report(elapsedSeconds);
+                awaitEvents(lambda);
+                // Erst nach den Event-Invokes: die Resizer gehören noch zu den Traces ihrer Uploads
+                printSlowestTrace(traces);
+                System.out.printf("%nDB: Photos=%d ResizeJobs=%d, S3: %s=%d %s=%d%n",
+                        database.count("Photos"), database.count("ResizeJobs"),
+                        Config.originalBucket(), s3.objectCount(Config.originalBucket()),
+                        Config.resizedBucket(), s3.objectCount(Config.resizedBucket()));
+            }
+        }
+        // Daemon-Pools der Handler und HTTP-Clients sollen den Prozess nicht aufhalten
+        System.exit(0);
+    }
+
+    // ===== Ablauf =====
+    private void seed(int count) throws InterruptedException {
+        System.out.println("Seeding " + count + " Bilder...");
+        for (int i = 0; i < count; i++) {
+            execute("upload");
+        }
+    }
+
+    private void run(int threads, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(pickOperation());
+                }
+            }, "loadtest-client-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void resetStats() {
+        for (LatencyRecorder recorder : operations.values()) {
+            recorder.reset();
+        }
+        pool.resetStats();
+    }
+
+    private String pickOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(mixTotal);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return "upload";
+    }
+
+    // Ein Client-Request wie vom Frontend über API Gateway (direkter Invoke der Lambda)
+    private void execute(String operation) {
+        long start = System.nanoTime();
+        boolean error;
+        try {
+            error = !succeeded(perform(operation));
+        } catch (Exception e) {
+            error = true;
+            if (Boolean.getBoolean("harness.verbose")) {
+                System.err.println(operation + " fehlgeschlagen: " + e);
+            }
+        }
+        LatencyRecorder recorder = operations.get(operation);
+        if (recorder != null) {
+            recorder.record(System.nanoTime() - start, error);
+        }
+    }
+
+    private String perform(String operation) throws Exception {
+        switch (operation) {
+            case "upload":
+                return upload();
+            case "list":
+                return pool.invoke("LambdaGetListOfObjects", new JSONObject()
+                        .put("httpMethod", "GET")
+                        .put("headers", new JSONObject().put("Accept-Encoding", "gzip"))
+                        .put("queryStringParameters", new JSONObject().put("limit", "100"))
+                        .toString());
+            case "gallery":
+                return pool.invoke("LambdaGetPhotosDB", new JSONObject()
+                        .put("httpMethod", "GET")
+                        .put("headers", new JSONObject().put("Accept-Encoding", "gzip"))
+                        .put("queryStringParameters", new JSONObject().put("limit", "50"))
+                        .toString());
+            case "get": {
+                String key = randomKey();
+                return key == null ? upload() : pool.invoke("LambdaGetObject", apiRequest(new JSONObject().put("key", key)));
+            }
+            case "thumbnails": {
+                JSONArray batch = new JSONArray();
+                for (int i = 0; i < THUMBNAIL_BATCH; i++) {
+                    String key = randomKey();
+                    if (key != null) {
+                        batch.put(RESIZED_PREFIX + key);
+                    }
+                }
+                return pool.invoke("LambdaGetObject", apiRequest(new JSONObject().put("keys", batch)));
+            }
+            case "resize": {
+                String key = randomKey();
+                return key == null ? upload() : pool.invoke("LambdaResizer", new JSONObject()
+                        .put("srcBucket", Config.originalBucket())
+                        .put("srcKey", key)
+                        .put("dstBucket", Config.resizedBucket())
+                        .put("dstKey", RESIZED_PREFIX + key)
+                        .toString());
+            }
+            case "delete": {
+                // Abwechselnd Duplikat-Zeilen: die geteilten Objekte verschwinden erst mit der letzten Zeile
+                Long id = ThreadLocalRandom.current().nextBoolean() ? takeDuplicateId() : null;
+                if (id != null) {
+                    return pool.invoke("LambdaDeleteOrchestrator", apiRequest(new JSONObject().put("id", id)));
+                }
+                String key = takeKey();
+                return key == null ? upload()
+                        : pool.invoke("LambdaDeleteOrchestrator", apiRequest(new JSONObject().put("key", key)));
+            }
+            case "page":
+                return pool.invoke("LambdaEntryPoint", new JSONObject().put("httpMethod", "GET").toString());
+            default:
+                throw new IllegalArgumentException("Unbekannte Operation: " + operation);
+        }
+    }
+
+    private String upload() throws Exception {
+        String key = "loadtest-" + keyCounter.incrementAndGet() + ".jpg";
+        JSONObject body = new JSONObject()
+                .put("key", key)
+                .put("content", uploadContent())
+                .put("description", "loadtest")
+                .put("email", "loadtest@example.com");
+        if ("async".equals(uploadMode)) {
+            body.put("async", true);
+        } else {
+            body.put("async", false);
+            body.put("fused", "fused".equals(uploadMode));
+        }
+        String result = pool.invoke("LambdaResizeOrchestrator", apiRequest(body));
+        // Duplikate legen kein neues Objekt an, nur eine Zeile unter dem gemeinsamen Hash-Key
+        if (succeeded(result)) {
+            JSONObject response = new JSONObject(new JSONObject(result).getString("body"));
+            if (response.optBoolean("deduplicated")) {
+                synchronized (duplicateIds) {
+                    duplicateIds.add(response.getLong("id"));
+                }
+            } else {
+                synchronized (keys) {
+                    keys.add(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Mit duplicateRatio eines der Testbilder unverändert (nach dem ersten Mal bekannt),
+    // sonst mit ein paar zufälligen Bytes hinter dem JPEG-Ende: gleiches Bild, anderer Hash
+    private String uploadContent() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String image = images.get(random.nextInt(images.size()));
+        if (random.nextDouble() < duplicateRatio) {
+            return image;
+        }
+        byte[] jpeg = Base64.getDecoder().decode(image);
+        byte[] unique = Arrays.copyOf(jpeg, jpeg.length + 16);
+        for (int i = jpeg.length; i < unique.length; i++) {
+            unique[i] = (byte) random.nextInt(256);
+        }
+        return Base64.getEncoder().encodeToString(unique);
+    }
+
+    private String randomKey() {
+        synchronized (keys) {
+            return keys.isEmpty() ? null : keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+        }
+    }
+
+    private String takeKey() {
+        synchronized (keys) {
+            if (keys.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(keys.size());
+            String last = keys.remove(keys.size() - 1);
+            return index == keys.size() ? last : keys.set(index, last);
+        }
+    }
+
+    private Long takeDuplicateId() {
+        synchronized (duplicateIds) {
+            return duplicateIds.isEmpty() ? null
+                    : duplicateIds.remove(ThreadLocalRandom.current().nextInt(duplicateIds.size()));
+        }
+    }
+
+    private static String apiRequest(JSONObject body) {
+        return new JSONObject()
+                .put("httpMethod", "POST")
+                .put("body", body.toString())
+                .put("isBase64Encoded", false)
+                .toString();
+    }
+
+    // API-Gateway-Antworten: Status < 400 (304 zählt als Erfolg); String-Antworten: keine Fehlermeldung
+    private static boolean succeeded(String result) {
+        if (result == null) {
+            return false;
+        }
+        String trimmed = result.trim();
+        if (trimmed.startsWith("{")) {
+            return new JSONObject(trimmed).optInt("statusCode", 200) < 400;
+        }
+        return !trimmed.contains("Fehler") && !trimmed.contains("Exception");
+    }
+
+    private static void awaitEvents(FakeLambdaServer lambda) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (lambda.pendingEvents() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+
+    // ===== Auswertung =====
+    private void report(double elapsedSeconds) {
+        System.out.printf("%nClient-Operationen (%.1f s)%n", elapsedSeconds);
+        printHeader("operation");
+        for (Map.Entry<String, LatencyRecorder> entry : operations.entrySet()) {
+            printRow(entry.getKey(), entry.getValue().snapshot(), elapsedSeconds, "");
+        }
+
+        System.out.printf("%nLambda-Funktionen (inkl. Unteraufrufe und Event-Invokes)%n");
+        printHeader("function");
+        for (LambdaPool.Function function : pool.functions().values()) {
+            LatencyRecorder.Snapshot snapshot = function.latencies.snapshot();
+            int coldStarts = function.coldStarts.get();
+            String cold = coldStarts == 0 ? "" : String.format("  cold=%d (init %d ms)", coldStarts,
+                    function.initMillis.get() / coldStarts);
+            printRow(function.name, snapshot, elapsedSeconds, cold);
+        }
+
+        // Aus den EMF-Zeilen der Handler (Metrics): Zeit pro Aufruf in jeder Stufe
+        System.out.printf("%nStufen pro Aufruf (Metrics/EMF)%n");
+        printHeader("function / stage");
+        for (LambdaPool.Function function : pool.functions().values()) {
+            for (Map.Entry<String, LatencyRecorder> stage : function.stages().entrySet()) {
+                printRow(function.name.replace("Lambda", "") + " / " + stage.getKey(), stage.getValue().snapshot(),
+                        elapsedSeconds, "");
+            }
+        }
+    }
+
+    private static void printSlowestTrace(TraceReport traces) throws IOException {
+        traces.flush();
+        List<String> slowest = traces.slowest(1);
+        if (!slowest.isEmpty()) {
+            System.out.printf("%nLangsamste Anfrage (Trace)%n");
+            traces.print(slowest.get(0), System.out);
+        }
+    }
+
+    private static void printHeader(String label) {
+        System.out.printf("%-38s %8s %7s %9s %9s %9s %9s%n", label, "count", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+    }
+
+    private static void printRow(String name, LatencyRecorder.Snapshot snapshot, double elapsedSeconds, String suffix) {
+        System.out.printf("%-38s %8d %7d %9.1f %9.1f %9.1f %9.1f%s%n", name, snapshot.count(), snapshot.errors,
+                snapshot.count() / elapsedSeconds, snapshot.percentileMillis(50), snapshot.percentileMillis(99),
+                snapshot.maxMillis(), suffix);
+    }
+
+    // ===== Eingaben =====
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length == 2) {
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight > 0) {
+                    mix.put(pair[0].trim(), weight);
+                }
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("harness.mix enthält keine Operation: " + spec);
+        }
+        return mix;
+    }
+
+    private static byte[] indexHtml() throws IOException {
+        Path path = Paths.get(System.getProperty("harness.indexHtml", "index.html"));
+        if (Files.exists(path)) {
+            return Files.readAllBytes(path);
+        }
+        return "<html><body>loadtest</body></html>".getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Einige JPEGs mit Verlauf und Rauschen, damit der Encoder realistisch arbeiten muss (Base64 wie vom Frontend)
+    private static List<String> testImages(int width) throws IOException {
+        int height = width * 3 / 4;
+        Random random = new Random(42);
+        List<String> images = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)),
+                    width, height, new Color(random.nextInt(0xFFFFFF))));
+            g.fillRect(0, 0, width, height);
+            g.dispose();
+            for (int i = 0; i < width * height / 8; i++) {
+                image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xFFFFFF));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpg", out);
+            images.add(Base64.getEncoder().encodeToString(out.toByteArray()));
+        }
+        return images;
+    }
+
+    private static int intProperty(String name, int fallback) {
+        String value = System.getProperty(name);
+        try {
+            return value == null ? fallback : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package vgu.cloud26;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.tools.Server;
+
+// H2 im MySQL-Modus statt RDS. Läuft als TCP-Server, damit jeder Container eine eigene
+// Verbindung über den Socket öffnet (wie gegen RDS) statt sich eine In-Memory-Session zu teilen.
+// Schema entspricht sql/*.sql (ohne MySQL-Präfixindex).
+final class LocalDatabase implements AutoCloseable {
+
+    static final String USER = "cloud26";
+    static final String PASSWORD = "loadtest";
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS Photos ("
+            + " ID BIGINT AUTO_INCREMENT PRIMARY KEY,"
+            + " Description VARCHAR(1024),"
+            + " S3Key VARCHAR(1024) NOT NULL,"
+            + " Email VARCHAR(255),"
+            + " SizeBytes BIGINT NULL,"
+            + " ContentType VARCHAR(100) NULL,"
+            + " Width INT NULL,"
+            + " Height INT NULL,"
+            + " ThumbnailKey VARCHAR(1024) NULL,"
+            + " ContentHash CHAR(64) NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_photos_s3key ON Photos (S3Key)",
+        "CREATE INDEX IF NOT EXISTS idx_photos_contenthash ON Photos (ContentHash)",
+        "CREATE TABLE IF NOT EXISTS ResizeJobs ("
+            + " JobId CHAR(36) NOT NULL PRIMARY KEY,"
+            + " S3Key VARCHAR(1024) NOT NULL,"
+            + " Status VARCHAR(16) NOT NULL,"
+            + " Error VARCHAR(1024) NULL,"
+            + " CreatedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),"
+            + " StartedAt TIMESTAMP(3) NULL,"
+            + " FinishedAt TIMESTAMP(3) NULL)"
+    };
+
+    private final Server server;
+    private final String jdbcUrl;
+    // Hält die In-Memory-Datenbank am Leben und dient für Auswertungen am Ende
+    private final Connection admin;
+
+    LocalDatabase() throws SQLException, IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        this.server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        this.jdbcUrl = "jdbc:h2:tcp://localhost:" + port + "/mem:cloud26;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        this.admin = DriverManager.getConnection(jdbcUrl, USER, PASSWORD);
+        try (Statement statement = admin.createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+        }
+    }
+
+    String jdbcUrl() {
+        return jdbcUrl;
+    }
+
+    synchronized long count(String table) throws SQLException {
+        try (Statement statement = admin.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        admin.close();
+        server.stop();
+    }
+}
@@ -0,0 +1,202 @@
+package vgu.cloud26;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.json.JSONObject;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+// Läuft INNERHALB eines LambdaContainer-Classloaders und spielt die Rolle der Java-Runtime von AWS:
+// Handler einmal instanziieren, JSON-Payload in den Eingabetyp umwandeln, Ergebnis wieder als JSON zurück.
+// Nur Strings gehen über die Classloader-Grenze, daher kein gemeinsamer Typ mit dem Harness nötig.
+public final class LocalRuntime {
+
+    private static Object handler;
+    private static Method handleRequest;
+    private static String functionName;
+    private static boolean verbose;
+    private static Consumer<String> logSink;
+
+    private LocalRuntime() {
+    }
+
+    // Entspricht der Init-Phase: statische Felder und Konstruktor des Handlers.
+    // EMF-Zeilen (Metrics) und Span-Zeilen (Trace) gehen an logSink - Consumer/String kommen vom
+    // Bootstrap-Loader und sind daher teilbar.
+    public static synchronized void init(String handlerClass, String name, boolean logToConsole,
+            Consumer<String> sink) throws Exception {
+        Class<?> type = Class.forName(handlerClass, true, LocalRuntime.class.getClassLoader());
+        handler = type.getDeclaredConstructor().newInstance();
+        handleRequest = findHandleRequest(type);
+        functionName = name;
+        verbose = logToConsole;
+        logSink = sink;
+    }
+
+    // Wirft die Exception des Handlers unverändert weiter (wie "Unhandled" in Lambda)
+    public static String invoke(String payload, String requestId) throws Throwable {
+        Object input = convertInput(payload, handleRequest.getParameterTypes()[0]);
+        try {
+            Object result = handleRequest.invoke(handler, input, new LocalContext(requestId));
+            return serializeOutput(result);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Method findHandleRequest(Class<?> type) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals("handleRequest") && method.getParameterCount() == 2
+                    && !method.isBridge() && Context.class.equals(method.getParameterTypes()[1])) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(type.getName() + " hat keine handleRequest(X, Context) Methode");
+    }
+
+    private static Object convertInput(String payload, Class<?> inputType) {
+        String json = payload == null || payload.isBlank() ? "{}" : payload;
+        if (inputType == String.class) {
+            return json.startsWith("\"") ? new JSONObject("{\"v\":" + json + "}").getString("v") : json;
+        }
+        JSONObject object = new JSONObject(json);
+        if (inputType == APIGatewayProxyRequestEvent.class) {
+            APIGatewayProxyRequestEvent event = new APIGatewayProxyRequestEvent();
+            event.setHttpMethod(object.optString("httpMethod", null));
+            event.setPath(object.optString("path", null));
+            event.setBody(object.optString("body", null));
+            event.setIsBase64Encoded(object.optBoolean("isBase64Encoded", false));
+            event.setHeaders(stringMap(object.optJSONObject("headers")));
+            event.setQueryStringParameters(stringMap(object.optJSONObject("queryStringParameters")));
+            return event;
+        }
+        // Map<String, Object> und alles andere: verschachtelte Maps/Listen wie bei der echten Runtime
+        return object.toMap();
+    }
+
+    private static Map<String, String> stringMap(JSONObject object) {
+        if (object == null) {
+            return null;
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String key : object.keySet()) {
+            map.put(key, String.valueOf(object.get(key)));
+        }
+        return map;
+    }
+
+    private static String serializeOutput(Object result) {
+        if (result == null) {
+            return "null";
+        }
+        if (result instanceof String) {
+            return JSONObject.quote((String) result);
+        }
+        if (result instanceof APIGatewayProxyResponseEvent) {
+            APIGatewayProxyResponseEvent response = (APIGatewayProxyResponseEvent) result;
+            JSONObject json = new JSONObject();
+            json.put("statusCode", response.getStatusCode());
+            json.put("headers", response.getHeaders() == null ? new JSONObject() : new JSONObject(response.getHeaders()));
+            json.put("body", response.getBody() == null ? JSONObject.NULL : response.getBody());
+            json.put("isBase64Encoded", Boolean.TRUE.equals(response.getIsBase64Encoded()));
+            return json.toString();
+        }
+        if (result instanceof Map) {
+            return new JSONObject((Map<?, ?>) result).toString();
+        }
+        return new JSONObject(result).toString();
+    }
+
+    // ===== Context =====
+    private static final class LocalContext implements Context {
+        private final String requestId;
+        private final long deadline = System.currentTimeMillis() + 15 * 60 * 1000L;
+
+        LocalContext(String requestId) {
+            this.requestId = requestId;
+        }
+
+        @Override
+        public String getAwsRequestId() {
+            return requestId;
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return "/aws/lambda/" + functionName;
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return "local";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return functionName;
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return "$LATEST";
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return "arn:aws:lambda:local:000000000000:function:" + functionName;
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return (int) Math.max(0, deadline - System.currentTimeMillis());
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return 1024;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return LOGGER;
+        }
+    }
+
+    // Handler loggen pro Aufruf viel; im Lasttest standardmäßig verworfen (harness.verbose=true zeigt alles)
+    private static final LambdaLogger LOGGER = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+            if (logSink != null && (message.startsWith("{\"_aws\"") || message.startsWith("{\"traceId\""))) {
+                logSink.accept(message);
+            }
+            if (verbose) {
+                System.out.println("[" + functionName + "] " + message);
+            }
+        }
+
+        @Override
+        public void log(byte[] message) {
+            log(new String(message, StandardCharsets.UTF_8));
+        }
+    };
+}
@@ -0,0 +1,246 @@
+package vgu.cloud26;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Setzt die Span-Zeilen von Trace (LambdaCommon) wieder zu Bäumen zusammen und zeigt pro Anfrage,
+// wo die Zeit bleibt: Offset und Dauer jedes Spans, Eigenzeit der Funktion und den Aufschlag eines
+// Invokes gegenüber der aufgerufenen Funktion (Netz, Warteschlange, Cold Start).
+// Der kritische Pfad (*) folgt ab der Wurzel immer dem Kind, das zuletzt fertig wird.
+//
+//   java -cp loadtest.jar vgu.cloud26.TraceReport <logdatei> [traceId]
+//
+// Die Logdatei darf beliebige andere Zeilen enthalten (CloudWatch-Export, harness.traceLog).
+// Ohne traceId: die langsamsten Traces als Liste, danach der langsamste im Detail.
+public final class TraceReport {
+
+    private static final int SLOWEST = 10;
+
+    private final Map<String, Map<String, Span>> traces = new LinkedHashMap<>();
+    private final BufferedWriter log;
+
+    TraceReport(Path logFile) throws IOException {
+        this.log = logFile == null ? null : Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Aufruf: TraceReport <logdatei> [traceId]");
+            System.exit(2);
+        }
+        TraceReport report = new TraceReport(null);
+        for (String line : Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            report.add(line);
+        }
+        if (args.length > 1) {
+            report.print(args[1], System.out);
+            return;
+        }
+        List<String> slowest = report.slowest(SLOWEST);
+        if (slowest.isEmpty()) {
+            System.out.println("Keine Spans gefunden");
+            return;
+        }
+        report.printSlowest(slowest, System.out);
+        System.out.println();
+        report.print(slowest.get(0), System.out);
+    }
+
+    // Eine Logzeile; alles ohne traceId/spanId wird ignoriert
+    synchronized void add(String line) {
+        int brace = line.indexOf("{\"traceId\"");
+        if (brace < 0) {
+            return;
+        }
+        JSONObject json;
+        try {
+            json = new JSONObject(line.substring(brace));
+        } catch (JSONException e) {
+            return;
+        }
+        String spanId = json.optString("spanId", null);
+        if (spanId == null) {
+            return;
+        }
+        if (log != null) {
+            try {
+                log.write(line);
+                log.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Span span = traces.computeIfAbsent(json.getString("traceId"), t -> new LinkedHashMap<>())
+                .computeIfAbsent(spanId, Span::new);
+        span.parentSpanId = json.optString("parentSpanId", null);
+        span.name = json.optString("name", "?");
+        span.kind = json.optString("kind", "");
+        span.startMs = json.optLong("startMs", span.startMs);
+        span.coldStart = json.optBoolean("coldStart", false);
+        if ("end".equals(json.optString("event"))) {
+            span.durationMs = json.optDouble("durationMs", 0);
+        }
+    }
+
+    synchronized void reset() {
+        traces.clear();
+    }
+
+    synchronized void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    // Trace-IDs nach Gesamtdauer (erster Start bis letztes Ende über alle Spans), langsamste zuerst
+    synchronized List<String> slowest(int limit) {
+        return traces.keySet().stream()
+                .sorted(Comparator.comparingDouble((String id) -> -totalMs(traces.get(id).values())))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    synchronized void printSlowest(List<String> traceIds, PrintStream out) {
+        out.printf("%-34s %10s %6s  %s%n", "trace", "total ms", "spans", "root");
+        for (String traceId : traceIds) {
+            Map<String, Span> spans = traces.get(traceId);
+            List<Span> roots = roots(spans);
+            out.printf("%-34s %10.1f %6d  %s%n", traceId, totalMs(spans.values()), spans.size(),
+                    roots.isEmpty() ? "?" : roots.get(0).name);
+        }
+    }
+
+    synchronized void print(String traceId, PrintStream out) {
+        Map<String, Span> spans = traces.get(traceId);
+        if (spans == null) {
+            out.println("Trace " + traceId + " nicht gefunden");
+            return;
+        }
+        long origin = spans.values().stream().mapToLong(s -> s.startMs).min().orElse(0);
+        out.printf("Trace %s: %.1f ms, %d Spans%n", traceId, totalMs(spans.values()), spans.size());
+        out.printf("  %9s %9s %9s %9s   %s%n", "offset", "dauer", "eigen", "aufschlag", "span");
+
+        Map<String, List<Span>> children = children(spans);
+        for (Span root : roots(spans)) {
+            print(root, children, origin, 0, true, out);
+        }
+        out.println("  * kritischer Pfad; aufschlag = Invoke minus Dauer der aufgerufenen Funktion, "
+                + "eigen = Dauer ohne Unter-Spans");
+    }
+
+    private void print(Span span, Map<String, List<Span>> children, long origin, int depth, boolean critical,
+            PrintStream out) {
+        List<Span> kids = children.getOrDefault(span.spanId, List.of());
+        Span last = kids.stream().max(Comparator.comparingDouble(Span::endMs)).orElse(null);
+
+        String self = Trace.KIND_FUNCTION.equals(span.kind) && span.durationMs >= 0
+                ? String.format("%9.1f", Math.max(0, span.durationMs - coveredMs(kids, span))) : "";
+        String overhead = "";
+        if (Trace.KIND_INVOKE.equals(span.kind) && kids.size() == 1 && span.durationMs >= 0
+                && kids.get(0).durationMs >= 0 && kids.get(0).endMs() <= span.endMs()) {
+            overhead = String.format("%9.1f", span.durationMs - kids.get(0).durationMs);
+        }
+        String label = (Trace.KIND_INVOKE.equals(span.kind) ? "-> " : "") + span.name
+                + (span.coldStart ? " (cold)" : "") + (span.durationMs < 0 ? " (kein Ende)" : "");
+        out.printf("%s %9d %9s %9s %9s   %s%s%n", critical ? "*" : " ", span.startMs - origin,
+                span.durationMs < 0 ? "?" : String.format("%.1f", span.durationMs), self, overhead,
+                "  ".repeat(depth), label);
+
+        for (Span kid : kids) {
+            print(kid, children, origin, depth + 1, critical && kid == last, out);
+        }
+    }
+
+    // Vereinigung der Kind-Intervalle innerhalb des Spans; parallele Kinder zählen nur einmal
+    private static double coveredMs(List<Span> kids, Span span) {
+        List<double[]> intervals = new ArrayList<>();
+        for (Span kid : kids) {
+            if (kid.durationMs >= 0) {
+                double from = Math.max(kid.startMs, span.startMs);
+                double to = Math.min(kid.endMs(), span.endMs());
+                if (to > from) {
+                    intervals.add(new double[] {from, to});
+                }
+            }
+        }
+        intervals.sort(Comparator.comparingDouble(i -> i[0]));
+        double covered = 0;
+        double reached = Double.NEGATIVE_INFINITY;
+        for (double[] interval : intervals) {
+            double from = Math.max(interval[0], reached);
+            if (interval[1] > from) {
+                covered += interval[1] - from;
+            }
+            reached = Math.max(reached, interval[1]);
+        }
+        return covered;
+    }
+
+    private static Map<String, List<Span>> children(Map<String, Span> spans) {
+        Map<String, List<Span>> children = new LinkedHashMap<>();
+        for (Span span : spans.values()) {
+            if (span.parentSpanId != null && spans.containsKey(span.parentSpanId)) {
+                children.computeIfAbsent(span.parentSpanId, p -> new ArrayList<>()).add(span);
+            }
+        }
+        for (List<Span> list : children.values()) {
+            list.sort(Comparator.comparingLong(s -> s.startMs));
+        }
+        return children;
+    }
+
+    // Spans ohne (bekannten) Parent, z.B. wenn der Aufrufer nicht mitgeloggt wurde
+    private static List<Span> roots(Map<String, Span> spans) {
+        return spans.values().stream()
+                .filter(s -> s.parentSpanId == null || !spans.containsKey(s.parentSpanId))
+                .sorted(Comparator.comparingLong(s -> s.startMs))
+                .collect(Collectors.toList());
+    }
+
+    private static double totalMs(Iterable<Span> spans) {
+        long first = Long.MAX_VALUE;
+        double last = Double.NEGATIVE_INFINITY;
+        for (Span span : spans) {
+            first = Math.min(first, span.startMs);
+            last = Math.max(last, span.endMs());
+        }
+        return first == Long.MAX_VALUE ? 0 : Math.max(0, last - first);
+    }
+
+    private static final class Span {
+        final String spanId;
+        String parentSpanId;
+        String name;
+        String kind;
+        long startMs;
+        // -1 solange nur die Start-Zeile da ist
+        double durationMs = -1;
+        boolean coldStart;
+
+        Span(String spanId) {
+            this.spanId = spanId;
+        }
+
+        double endMs() {
+            return startMs + Math.max(0, durationMs);
+        }
+    }
+}
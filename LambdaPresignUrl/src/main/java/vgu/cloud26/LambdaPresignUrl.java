@@ -0,0 +1,353 @@
+package vgu.cloud26;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvocationType;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+// Presigned URLs: der Client lädt Bytes direkt von/nach S3, die Lambda signiert nur.
+// Aktionen (Feld "action" im Body):
+//   download -> GET-URL für ein Original oder ein Thumbnail ("thumbnail": true)
+//   upload   -> PUT-URL für ein neues Original (Content-Type ist mitsigniert); mit "size" ab
+//               MULTIPART_THRESHOLD_MB stattdessen ein Multipart-Upload mit einer PUT-URL pro Teil
+//   complete -> nach dem PUT: Photos-Eintrag anlegen und LambdaResizer per Event starten
+//               (Multipart: vorher mit "uploadId" und "parts" [{partNumber, etag}] zusammensetzen)
+//   abort    -> angefangenen Multipart-Upload ("uploadId") verwerfen
+public class LambdaPresignUrl implements RequestHandler<Map<String, Object>, APIGatewayProxyResponseEvent> {
+
+    // --- KONFIGURATION (Identisch zu LambdaResizeOrchestrator) ---
+    private static final String ORIGINAL_BUCKET = Config.originalBucket();
+    private static final String RESIZED_BUCKET = Config.resizedBucket();
+    private static final String RESIZED_PREFIX = "resized-";
+
+    // Gültigkeit der URLs (Env PRESIGN_TTL_SECONDS, Standard 5 Minuten)
+    private static final Duration URL_TTL = Duration.ofSeconds(ttlSeconds(System.getenv("PRESIGN_TTL_SECONDS"), 300));
+
+    // --- DATENBANK (Identisch zu LambdaUploadObject) ---
+    private static final String RDS_INSTANCE_HOSTNAME = "database-1.cdq0ekg8q844.ap-southeast-2.rds.amazonaws.com";
+    private static final int RDS_INSTANCE_PORT = 3306;
+    private static final String DB_USER = "cloud26";
+    private static final String JDBC_URL = "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME + ":" + RDS_INSTANCE_PORT + "/cloud26";
+
+    private static final RdsConnectionProvider DB =
+            new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
+
+    private static final Map<String, String> JSON_HEADERS = Map.of(
+            "Content-Type", "application/json",
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Headers", "*",
+            "Access-Control-Allow-Methods", "POST, OPTIONS");
+
+    private final S3Presigner presigner = AwsClients.s3Presigner();
+    private final S3Client s3Client = AwsClients.s3();
+    private final LambdaClient lambdaClient = AwsClients.lambda();
+    private final MultipartUploader multipart = MultipartUploader.fromEnvironment(s3Client, presigner);
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handle(Map<String, Object> input, Context context) {
+        if ("OPTIONS".equalsIgnoreCase(httpMethod(input))) {
+            return respond(200, new JSONObject());
+        }
+
+        try {
+            String body = extractBodyFromInput(input);
+            JSONObject inputJson = new JSONObject(body == null || body.isEmpty() ? "{}" : body);
+
+            String action = inputJson.optString("action", "");
+            String key = inputJson.optString("key", "").trim();
+            if (key.isEmpty()) {
+                return respond(400, new JSONObject().put("error", "'key' is required"));
+            }
+            context.getLogger().log("Presign " + action + ": " + key);
+            // Hash-Keys gehören deduplizierten Inhalten, Lesen ist erlaubt, Schreiben nicht
+            if (!"download".equals(action) && SharedContent.isSharedKey(key)) {
+                return respond(400, new JSONObject().put("error",
+                        "Keys starting with " + SharedContent.PREFIX + " are reserved for deduplicated content"));
+            }
+
+            switch (action) {
+                case "download":
+                    return presignDownload(key, inputJson.optBoolean("thumbnail", false));
+                case "upload":
+                    return presignUpload(key, inputJson.optString("contentType", ""), inputJson.optLong("size", 0));
+                case "complete":
+                    return completeUpload(key, inputJson, context);
+                case "abort":
+                    return abortUpload(key, inputJson.optString("uploadId", ""));
+                default:
+                    return respond(400, new JSONObject().put("error",
+                            "'action' must be download, upload, complete or abort"));
+            }
+
+        } catch (Exception e) {
+            context.getLogger().log("FEHLER: " + e.getClass().getName() + " - " + e.getMessage());
+            return respond(500, new JSONObject().put("error", e.getClass().getName() + ": " + e.getMessage()));
+        }
+    }
+
+    // ===== download =====
+    private APIGatewayProxyResponseEvent presignDownload(String key, boolean thumbnail) {
+        String bucket = thumbnail ? RESIZED_BUCKET : ORIGINAL_BUCKET;
+        String objectKey = thumbnail ? RESIZED_PREFIX + key : key;
+
+        PresignedGetObjectRequest presigned = presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(URL_TTL)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucket).key(objectKey).build())
+                .build());
+
+        return respond(200, new JSONObject()
+                .put("method", "GET")
+                .put("url", presigned.url().toString())
+                .put("key", objectKey)
+                .put("expiresAt", presigned.expiration().toEpochMilli()));
+    }
+
+    // ===== upload =====
+    private APIGatewayProxyResponseEvent presignUpload(String key, String contentType, long size) {
+        if (!isImageFile(key)) {
+            return respond(400, new JSONObject().put("error", "Nur Bilddateien erlaubt (jpg, jpeg, png, gif, bmp, webp)"));
+        }
+        if (contentType.isEmpty()) {
+            contentType = MimeTypes.forKey(key);
+        }
+        if (multipart.shouldUse(size)) {
+            return presignMultipartUpload(key, contentType, size);
+        }
+
+        // Content-Type wird mitsigniert: der Client muss genau diesen Header beim PUT senden
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(URL_TTL)
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(ORIGINAL_BUCKET)
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .build());
+
+        return respond(200, new JSONObject()
+                .put("method", "PUT")
+                .put("url", presigned.url().toString())
+                .put("key", key)
+                .put("headers", new JSONObject().put("Content-Type", contentType))
+                .put("expiresAt", presigned.expiration().toEpochMilli()));
+    }
+
+    // Große Originale in Teilen: der Client schickt Teil n (Bytes ab (n-1) x partSize) an parts[n-1].url
+    // und merkt sich den ETag jeder Antwort für complete. Content-Type steht schon im Upload.
+    private APIGatewayProxyResponseEvent presignMultipartUpload(String key, String contentType, long size) {
+        MultipartUploader.Started started = multipart.start(ORIGINAL_BUCKET, key, contentType, size, URL_TTL);
+
+        JSONArray parts = new JSONArray();
+        for (int i = 0; i < started.partUrls.size(); i++) {
+            parts.put(new JSONObject().put("partNumber", i + 1).put("url", started.partUrls.get(i)));
+        }
+        return respond(200, new JSONObject()
+                .put("method", "PUT")
+                .put("multipart", true)
+                .put("uploadId", started.uploadId)
+                .put("partSize", started.partSize)
+                .put("parts", parts)
+                .put("key", key)
+                .put("headers", new JSONObject())
+                .put("expiresAt", started.expiresAt.toEpochMilli()));
+    }
+
+    // ===== abort =====
+    private APIGatewayProxyResponseEvent abortUpload(String key, String uploadId) {
+        if (uploadId.isEmpty()) {
+            return respond(400, new JSONObject().put("error", "'uploadId' is required"));
+        }
+        multipart.abort(ORIGINAL_BUCKET, key, uploadId);
+        return respond(200, new JSONObject().put("key", key).put("uploadId", uploadId).put("aborted", true));
+    }
+
+    // ===== complete =====
+    // Prüft per HEAD, dass der PUT angekommen ist, dann Photos-Eintrag + ResizeJob + Event-Invoke des Resizers.
+    // Idempotent: die JobId folgt aus Key und ETag, ein wiederholtes complete für denselben Upload
+    // liefert den vorhandenen Job statt eine zweite Zeile und einen zweiten Resize anzulegen.
+    private APIGatewayProxyResponseEvent completeUpload(String key, JSONObject inputJson, Context context) throws Exception {
+        String uploadId = inputJson.optString("uploadId", "");
+        if (!uploadId.isEmpty()) {
+            JSONArray parts = inputJson.optJSONArray("parts");
+            if (parts == null || parts.isEmpty()) {
+                return respond(400, new JSONObject().put("error", "'parts' is required for a multipart upload"));
+            }
+            Map<Integer, String> etags = new HashMap<>();
+            for (int i = 0; i < parts.length(); i++) {
+                JSONObject part = parts.getJSONObject(i);
+                etags.put(part.getInt("partNumber"), part.getString("etag"));
+            }
+            try {
+                multipart.complete(ORIGINAL_BUCKET, key, uploadId, etags);
+            } catch (NoSuchUploadException e) {
+                // Wiederholtes complete: der Upload ist schon zusammengesetzt, der HEAD unten entscheidet
+                context.getLogger().log("Multipart " + uploadId + " nicht mehr offen, prüfe Objekt");
+            }
+        }
+
+        HeadObjectResponse head;
+        try {
+            head = s3Client.headObject(HeadObjectRequest.builder().bucket(ORIGINAL_BUCKET).key(key).build());
+        } catch (NoSuchKeyException e) {
+            return respond(404, new JSONObject().put("error", "Objekt nicht gefunden, Upload noch nicht abgeschlossen?"));
+        }
+
+        String jobId = UUID.nameUUIDFromBytes((key + "\n" + head.eTag()).getBytes(StandardCharsets.UTF_8)).toString();
+        boolean created = DB.execute(connection -> ResizeJobStore.createIfAbsent(connection, jobId, key));
+        // Fehlgeschlagene Jobs darf der Client mit einem erneuten complete wieder anstoßen
+        if (!created && !DB.execute(connection -> ResizeJobStore.restartFailed(connection, jobId))) {
+            ResizeJobStore.Job job = DB.read(connection -> ResizeJobStore.find(connection, jobId));
+            context.getLogger().log("Upload bereits registriert: " + key + ", Job " + jobId + " (" + job.status + ")");
+            return respond(200, completeResponse(key, head.contentLength(), jobId, job.status)
+                    .put("message", "Upload bereits registriert")
+                    .put("alreadyCompleted", true));
+        }
+
+        // Die Bytes gehen am Lambda vorbei direkt nach S3, daher ohne ContentHash (keine Deduplizierung).
+        // Wird derselbe Key neu hochgeladen, bleibt es bei der vorhandenen Zeile: Hash und Thumbnail des alten
+        // Inhalts werden verworfen (kein falsches Dedup-Ziel), der Resizer trägt die neuen Werte ein.
+        try {
+            DB.executeUpdate(connection -> {
+                if (PhotoStore.exists(connection, key)) {
+                    PhotoStore.invalidate(connection, key);
+                } else {
+                    PhotoStore.insert(connection, inputJson.optString("description", ""), key,
+                            inputJson.optString("email", ""), head.contentLength(), head.contentType(), null);
+                }
+            });
+        } catch (SQLException e) {
+            // Job nicht als pending hängen lassen, sonst greift der Neustart beim nächsten complete nicht
+            DB.executeUpdate(connection -> ResizeJobStore.markFinished(connection, jobId,
+                    ResizeJobStore.STATUS_FAILED, e.getMessage()));
+            throw e;
+        }
+
+        JSONObject resizePayload = new JSONObject();
+        resizePayload.put("srcBucket", ORIGINAL_BUCKET);
+        resizePayload.put("srcKey", key);
+        resizePayload.put("dstBucket", RESIZED_BUCKET);
+        resizePayload.put("dstKey", RESIZED_PREFIX + key);
+        resizePayload.put("jobId", jobId);
+
+        Trace.Span span = Trace.invoke("LambdaResizer");
+        try {
+            lambdaClient.invoke(InvokeRequest.builder()
+                    .functionName("LambdaResizer")
+                    .invocationType(InvocationType.EVENT)
+                    .payload(SdkBytes.fromUtf8String(Trace.inject(resizePayload.toString(), span)))
+                    .build());
+        } catch (RuntimeException e) {
+            DB.executeUpdate(connection -> ResizeJobStore.markFinished(connection, jobId,
+                    ResizeJobStore.STATUS_FAILED, e.getMessage()));
+            throw e;
+        } finally {
+            span.end();
+        }
+        context.getLogger().log("Upload abgeschlossen: " + key + " (" + head.contentLength() + " Bytes), Job " + jobId);
+
+        return respond(200, completeResponse(key, head.contentLength(), jobId, ResizeJobStore.STATUS_PENDING)
+                .put("message", "Upload registriert, Thumbnail wird erstellt"));
+    }
+
+    // Status des Thumbnails: LambdaResizeOrchestrator ?jobId=...
+    private static JSONObject completeResponse(String key, long size, String jobId, String status) {
+        return new JSONObject()
+                .put("key", key)
+                .put("size", size)
+                .put("jobId", jobId)
+                .put("status", status)
+                .put("thumbnailKey", RESIZED_PREFIX + key)
+                .put("completedAt", Instant.now().toEpochMilli());
+    }
+
+    // ===== Helpers =====
+    private APIGatewayProxyResponseEvent respond(int statusCode, JSONObject body) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withBody(body.toString())
+                .withHeaders(JSON_HEADERS);
+    }
+
+    private String extractBodyFromInput(Map<String, Object> input) {
+        if (input.containsKey("body")) {
+            String body = (String) input.get("body");
+            Object isBase64Encoded = input.get("isBase64Encoded");
+            if (Boolean.TRUE.equals(isBase64Encoded) && body != null) {
+                return new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+            }
+            return body;
+        }
+        // Direktes Lambda Invoke: der Input ist der Body
+        return new JSONObject(input).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String httpMethod(Map<String, Object> input) {
+        Object requestContext = input.get("requestContext");
+        if (requestContext instanceof Map) {
+            Object http = ((Map<String, Object>) requestContext).get("http");
+            if (http instanceof Map) {
+                Object method = ((Map<String, Object>) http).get("method");
+                return method == null ? null : String.valueOf(method);
+            }
+        }
+        return null;
+    }
+
+    private boolean isImageFile(String fileName) {
+        String lowerCaseName = fileName.toLowerCase();
+        return lowerCaseName.endsWith(".jpg") ||
+               lowerCaseName.endsWith(".jpeg") ||
+               lowerCaseName.endsWith(".png") ||
+               lowerCaseName.endsWith(".gif") ||
+               lowerCaseName.endsWith(".bmp") ||
+               lowerCaseName.endsWith(".webp");
+    }
+
+    private static long ttlSeconds(String value, long fallback) {
+        try {
+            return value == null ? fallback : Math.max(1, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package vgu.cloud26;
 
+import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONObject;
 
@@ -12,23 +22,82 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 
 import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvocationType;
 import software.amazon.awssdk.services.lambda.model.InvokeRequest;
 import software.amazon.awssdk.services.lambda.model.InvokeResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
 public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Object>, APIGatewayProxyResponseEvent> {
 
-    private final LambdaClient lambdaClient = LambdaClient.builder()
-            .region(Region.AP_SOUTHEAST_2)
-            .build();
+    private static final String ORIGINAL_BUCKET = Config.originalBucket();
+    private static final String RESIZED_BUCKET = Config.resizedBucket();
+    private static final String RESIZED_PREFIX = "resized-";
+
+    // --- DATENBANK (Identisch zu LambdaUploadObject, für den fused Modus und die ResizeJobs) ---
+    private static final String RDS_INSTANCE_HOSTNAME = "database-1.cdq0ekg8q844.ap-southeast-2.rds.amazonaws.com";
+    private static final int RDS_INSTANCE_PORT = 3306;
+    private static final String DB_USER = "cloud26";
+    private static final String JDBC_URL = "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME + ":" + RDS_INSTANCE_PORT + "/cloud26";
+
+    private static final RdsConnectionProvider DB =
+            new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
+
+    // Fused Modus: Original-PUT und Thumbnails direkt aus den Bytes im Speicher, ohne LambdaUploadObject/LambdaResizer.
+    // Pro Request über "fused": true/false, sonst Default aus FUSED_UPLOAD.
+    private static final boolean FUSED_DEFAULT = Boolean.parseBoolean(System.getenv("FUSED_UPLOAD"));
+
+    // Async Modus: Antwort 202 mit jobId direkt nach dem Speichern des Originals, Resize per Event-Invoke.
+    // Pro Request über "async": true/false, sonst Default aus ASYNC_RESIZE. Status: ?jobId=...
+    private static final boolean ASYNC_DEFAULT = Boolean.parseBoolean(System.getenv("ASYNC_RESIZE"));
+
+    // Bekannter Inhalt (SHA-256 in Photos.ContentHash): nur eine Photos-Zeile, kein Upload und kein Resize.
+    // Pro Request über "dedup": true/false, CONTENT_DEDUP=false schaltet es ganz ab.
+    private static final boolean DEDUP_DEFAULT = !"false".equalsIgnoreCase(System.getenv("CONTENT_DEDUP"));
+
+    private static final Map<String, String> JSON_HEADERS = Map.of(
+            "Content-Type", "application/json",
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Headers", "*",
+            "Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+
+    private static final ExecutorService PIPELINE_POOL = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "orchestrator-pipeline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ImageEncoder ENCODER = ImageEncoder.fromEnvironment();
+
+    private final LambdaClient lambdaClient = AwsClients.lambda();
+    private final S3Client s3Client = AwsClients.s3();
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handle(Map<String, Object> input, Context context) {
         APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
         
         try {
             context.getLogger().log("LambdaResizeOrchestrator gestartet");
+
+            // 0. Polling des Job-Status (GET ?jobId=...)
+            String pollJobId = queryParameter(input, "jobId");
+            if (pollJobId != null) {
+                return jobStatusResponse(pollJobId, context);
+            }
             
             // 1. Body aus dem Input extrahieren
             String body = extractBodyFromInput(input, context);
@@ -43,6 +112,9 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
             
             // 2. JSON parsen
             JSONObject inputJson = new JSONObject(body);
+            if (!inputJson.has("content") && inputJson.has("jobId")) {
+                return jobStatusResponse(inputJson.getString("jobId"), context);
+            }
             String content = inputJson.getString("content");
             String key = inputJson.getString("key");
             
@@ -55,45 +127,85 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
                         .withStatusCode(400)
                         .withBody("{\"error\": \"Only image files can be processed\"}");
             }
-            
-            // 4. SCHRITT 1: Original in lmitu16 hochladen
-            JSONObject uploadPayload = new JSONObject();
-            uploadPayload.put("content", content);
-            uploadPayload.put("key", key);
-            uploadPayload.put("bucket", "lmitu16");
-            
-            context.getLogger().log("Rufe LambdaUploadObject auf...");
-            String uploadResult = invokeLambdaSync("LambdaUploadObject", uploadPayload.toString(), context);
-            context.getLogger().log("Upload Ergebnis: " + uploadResult);
-            
-            if (uploadResult.contains("Fehler") || uploadResult.contains("Exception")) {
-                throw new RuntimeException("Upload fehlgeschlagen: " + uploadResult);
+            if (SharedContent.isSharedKey(key)) {
+                return response
+                        .withStatusCode(400)
+                        .withBody("{\"error\": \"Keys starting with " + SharedContent.PREFIX
+                                + " are reserved for deduplicated content\"}");
             }
-            
-            // 5. SCHRITT 2: Bild resizen und in myresizedimagesbucket speichern
-            JSONObject resizePayload = new JSONObject();
-            resizePayload.put("srcBucket", "lmitu16");
-            resizePayload.put("srcKey", key);
-            resizePayload.put("dstBucket", "myresizedimagesbucket");
-            resizePayload.put("dstKey", "resized-" + key);
-            
-            context.getLogger().log("Rufe LambdaResizer auf...");
-            String resizeResult = invokeLambdaSync("LambdaResizer", resizePayload.toString(), context);
-            context.getLogger().log("Resize Ergebnis: " + resizeResult);
-            
-            if (resizeResult.contains("Fehler") || resizeResult.contains("Exception")) {
-                throw new RuntimeException("Resize fehlgeschlagen: " + resizeResult);
+            List<Integer> unsupported = ImageRenditions.unsupportedSizes(
+                    inputJson.has("sizes") ? inputJson.getJSONArray("sizes").toList() : null);
+            if (!unsupported.isEmpty()) {
+                return response
+                        .withStatusCode(400)
+                        .withBody(new JSONObject()
+                                .put("error", "Unsupported sizes " + unsupported + ", allowed: "
+                                        + ImageRenditions.parseSizes(null))
+                                .toString());
             }
             
+            // Base64 einmal dekodieren: Hash für die Duplikat-Prüfung, Bytes für fused und async
+            byte[] bytes = Metrics.time(Metrics.BASE64_DECODE, () -> Base64.getDecoder().decode(content));
+            String contentHash = ContentHash.of(bytes);
+            if (inputJson.optBoolean("dedup", DEDUP_DEFAULT)) {
+                PhotoStore.ContentMatch found =
+                        DB.read(connection -> PhotoStore.findByContentHash(connection, contentHash));
+                PhotoStore.ContentMatch match = found == null ? null : share(found, context);
+                if (match != null) {
+                    return duplicateResponse(inputJson, key, match, context);
+                }
+            }
+
+            if (inputJson.optBoolean("async", ASYNC_DEFAULT)) {
+                return startAsyncResize(inputJson, key, bytes, contentHash, context);
+            }
+
+            boolean fused = inputJson.optBoolean("fused", FUSED_DEFAULT);
+            if (fused) {
+                // 4+5. Original und Thumbnails parallel aus dem Speicher
+                runFusedPipeline(inputJson, key, bytes, contentHash, context);
+            } else {
+                // 4. SCHRITT 1: Original in lmitu16 hochladen (Duplikate sind oben schon erledigt)
+                JSONObject uploadPayload = new JSONObject();
+                uploadPayload.put("content", content);
+                uploadPayload.put("key", key);
+                uploadPayload.put("bucket", ORIGINAL_BUCKET);
+                uploadPayload.put("dedup", false);
+
+                context.getLogger().log("Rufe LambdaUploadObject auf...");
+                String uploadResult = invokeLambdaSync("LambdaUploadObject", uploadPayload.toString(), context);
+                context.getLogger().log("Upload Ergebnis: " + uploadResult);
+
+                if (uploadResult.contains("Fehler") || uploadResult.contains("Exception")) {
+                    throw new RuntimeException("Upload fehlgeschlagen: " + uploadResult);
+                }
+
+                // 5. SCHRITT 2: Bild resizen und in myresizedimagesbucket speichern
+                JSONObject resizePayload = new JSONObject();
+                resizePayload.put("srcBucket", ORIGINAL_BUCKET);
+                resizePayload.put("srcKey", key);
+                resizePayload.put("dstBucket", RESIZED_BUCKET);
+                resizePayload.put("dstKey", RESIZED_PREFIX + key);
+
+                context.getLogger().log("Rufe LambdaResizer auf...");
+                String resizeResult = invokeLambdaSync("LambdaResizer", resizePayload.toString(), context);
+                context.getLogger().log("Resize Ergebnis: " + resizeResult);
+
+                if (resizeResult.contains("Fehler") || resizeResult.contains("Exception")) {
+                    throw new RuntimeException("Resize fehlgeschlagen: " + resizeResult);
+                }
+            }
+
             context.getLogger().log("Bildverarbeitung erfolgreich abgeschlossen");
             
             // 6. Erfolgreiche Response zurückgeben
             JSONObject successResponse = new JSONObject();
             successResponse.put("message", "Bild erfolgreich verarbeitet");
             successResponse.put("originalKey", key);
-            successResponse.put("thumbnailKey", "resized-" + key);
-            successResponse.put("originalBucket", "lmitu16");
-            successResponse.put("thumbnailBucket", "myresizedimagesbucket");
+            successResponse.put("thumbnailKey", RESIZED_PREFIX + key);
+            successResponse.put("originalBucket", ORIGINAL_BUCKET);
+            successResponse.put("thumbnailBucket", RESIZED_BUCKET);
+            successResponse.put("mode", fused ? "fused" : "chained");
             
             return response
                     .withStatusCode(200)
@@ -106,6 +218,10 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
                     ));
                     
         } catch (Exception e) {
+            // Fehler aus den parallelen Schritten kommen als CompletionException
+            if (e instanceof CompletionException && e.getCause() instanceof Exception) {
+                e = (Exception) e.getCause();
+            }
             context.getLogger().log("Fehler in LambdaResizeOrchestrator: " + e.getMessage());
             e.printStackTrace();
             
@@ -123,6 +239,197 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
         }
     }
 
+    // Original speichern, Job anlegen, LambdaResizer per Event anstoßen und sofort 202 zurückgeben.
+    // Der Resizer trägt Ende/Fehler in ResizeJobs ein.
+    private APIGatewayProxyResponseEvent startAsyncResize(JSONObject inputJson, String key, byte[] bytes,
+            String contentHash, Context context) throws Exception {
+        storeOriginal(bytes, key, inputJson.optString("description", ""), inputJson.optString("email", ""),
+                contentHash);
+
+        String jobId = UUID.randomUUID().toString();
+        DB.executeUpdate(connection -> ResizeJobStore.create(connection, jobId, key));
+
+        JSONObject resizePayload = new JSONObject();
+        resizePayload.put("srcBucket", ORIGINAL_BUCKET);
+        resizePayload.put("srcKey", key);
+        resizePayload.put("dstBucket", RESIZED_BUCKET);
+        resizePayload.put("dstKey", RESIZED_PREFIX + key);
+        resizePayload.put("jobId", jobId);
+        if (inputJson.has("sizes")) {
+            resizePayload.put("sizes", inputJson.getJSONArray("sizes"));
+        }
+
+        try {
+            invokeLambdaAsync("LambdaResizer", resizePayload.toString(), context);
+        } catch (RuntimeException e) {
+            DB.executeUpdate(connection -> ResizeJobStore.markFinished(connection, jobId,
+                    ResizeJobStore.STATUS_FAILED, e.getMessage()));
+            throw e;
+        }
+
+        JSONObject accepted = new JSONObject();
+        accepted.put("message", "Original gespeichert, Thumbnail wird erstellt");
+        accepted.put("jobId", jobId);
+        accepted.put("status", ResizeJobStore.STATUS_PENDING);
+        accepted.put("originalKey", key);
+        accepted.put("thumbnailKey", RESIZED_PREFIX + key);
+        accepted.put("originalBucket", ORIGINAL_BUCKET);
+        accepted.put("thumbnailBucket", RESIZED_BUCKET);
+        accepted.put("mode", "async");
+
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(202)
+                .withBody(accepted.toString())
+                .withHeaders(JSON_HEADERS);
+    }
+
+    // Inhalt existiert schon: Zeile mit Beschreibung/Email des Uploads, Keys des vorhandenen Bildes
+    private APIGatewayProxyResponseEvent duplicateResponse(JSONObject inputJson, String key,
+            PhotoStore.ContentMatch match, Context context) throws SQLException {
+        long id = DB.execute(connection -> PhotoStore.insertDuplicate(connection,
+                inputJson.optString("description", ""), inputJson.optString("email", ""), match));
+        context.getLogger().log("Inhalt von " + key + " bereits vorhanden als " + match.s3Key);
+
+        JSONObject duplicate = new JSONObject();
+        duplicate.put("id", id);
+        duplicate.put("message", "Bild bereits vorhanden, nur Eintrag angelegt");
+        duplicate.put("originalKey", match.s3Key);
+        duplicate.put("thumbnailKey", match.thumbnailKey);
+        duplicate.put("originalBucket", ORIGINAL_BUCKET);
+        duplicate.put("thumbnailBucket", RESIZED_BUCKET);
+        duplicate.put("requestedKey", key);
+        duplicate.put("deduplicated", true);
+        duplicate.put("mode", "dedup");
+
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(duplicate.toString())
+                .withHeaders(JSON_HEADERS);
+    }
+
+    // Kopie unter den Hash-Key (SharedContent) fehlgeschlagen -> normal hochladen
+    private PhotoStore.ContentMatch share(PhotoStore.ContentMatch found, Context context) {
+        try {
+            return SharedContent.share(s3Client, ORIGINAL_BUCKET, RESIZED_BUCKET, RESIZED_PREFIX, found);
+        } catch (RuntimeException e) {
+            context.getLogger().log("WARNUNG: " + found.s3Key + " nicht geteilt: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private APIGatewayProxyResponseEvent jobStatusResponse(String jobId, Context context) throws SQLException {
+        context.getLogger().log("Job-Status: " + jobId);
+        ResizeJobStore.Job job = DB.read(connection -> ResizeJobStore.find(connection, jobId));
+        if (job == null) {
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(404)
+                    .withBody(new JSONObject().put("error", "Unknown jobId").toString())
+                    .withHeaders(JSON_HEADERS);
+        }
+
+        JSONObject status = new JSONObject();
+        status.put("jobId", job.jobId);
+        status.put("key", job.s3Key);
+        status.put("status", job.status);
+        if (job.error != null) {
+            status.put("error", job.error);
+        }
+        status.put("createdAt", job.createdAt.getTime());
+        if (job.startedAt != null) {
+            status.put("startedAt", job.startedAt.getTime());
+            status.put("queueMs", job.startedAt.getTime() - job.createdAt.getTime());
+        }
+        if (job.finishedAt != null) {
+            status.put("finishedAt", job.finishedAt.getTime());
+            status.put("totalMs", job.finishedAt.getTime() - job.createdAt.getTime());
+            if (job.startedAt != null) {
+                status.put("resizeMs", job.finishedAt.getTime() - job.startedAt.getTime());
+            }
+        }
+
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(status.toString())
+                .withHeaders(JSON_HEADERS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String queryParameter(Map<String, Object> input, String name) {
+        Object params = input.get("queryStringParameters");
+        if (params instanceof Map) {
+            Object value = ((Map<String, Object>) params).get(name);
+            if (value != null && !String.valueOf(value).isEmpty()) {
+                return String.valueOf(value);
+            }
+        }
+        return null;
+    }
+
+    // Original-PUT (+ Photos-Eintrag) und Thumbnail-Erzeugung laufen gleichzeitig auf denselben Bytes;
+    // zurück erst, wenn beides fertig ist
+    private void runFusedPipeline(JSONObject inputJson, String key, byte[] bytes, String contentHash,
+            Context context) throws Exception {
+        String description = inputJson.optString("description", "");
+        String email = inputJson.optString("email", "");
+        List<Integer> sizes = ImageRenditions.parseSizes(
+                inputJson.has("sizes") ? inputJson.getJSONArray("sizes").toList() : null);
+
+        context.getLogger().log("Fused Pipeline: " + key + " (" + bytes.length + " Bytes)");
+
+        CompletableFuture<String> original = CompletableFuture.supplyAsync(
+                () -> storeOriginal(bytes, key, description, email, contentHash), PIPELINE_POOL);
+
+        // Gleiche Metadaten wie LambdaResizer (source-etag, resize-params), damit ein späterer Resize-Aufruf
+        // die Thumbnails als aktuell erkennt. Gerendert wird parallel zum Original-PUT, hochgeladen erst mit
+        // dessen ETag: bei SSE-KMS oder Multipart ist der ETag kein MD5 der Bytes und lässt sich nicht vorhersagen.
+        List<CompletableFuture<Void>> thumbnails = new ArrayList<>();
+        AtomicReference<ImageRenditions.Rendition> thumbnail = new AtomicReference<>();
+        boolean isImage = ImageRenditions.render(new ByteArrayInputStream(bytes), sizes, RESIZED_PREFIX + key, ENCODER,
+                rendition -> {
+                    thumbnail.set(ImageRenditions.pickThumbnail(thumbnail.get(), rendition));
+                    thumbnails.add(original.thenAcceptAsync(
+                            sourceEtag -> putObject(RESIZED_BUCKET, rendition.key, rendition.contentType,
+                                    rendition.content, ImageRenditions.metadata(rendition, sourceEtag, ENCODER)),
+                            PIPELINE_POOL));
+                });
+
+        original.join();
+        CompletableFuture.allOf(thumbnails.toArray(new CompletableFuture[0])).join();
+
+        if (!isImage) {
+            throw new RuntimeException("Resize fehlgeschlagen: Kein Bild");
+        }
+        // Erst nach dem INSERT aus storeOriginal, sonst gibt es die Zeile noch nicht
+        ImageRenditions.Rendition picked = thumbnail.get();
+        DB.execute(connection -> PhotoStore.updateImageInfo(connection, key, picked.sourceWidth, picked.sourceHeight,
+                picked.key));
+    }
+
+    // Rückgabe: ETag des Originals (ohne Anführungszeichen), wie ihn der Resizer beim GET sieht
+    private String storeOriginal(byte[] bytes, String key, String description, String email, String contentHash) {
+        String contentType = MimeTypes.forKey(key);
+        String etag = putObject(ORIGINAL_BUCKET, key, contentType, bytes, Map.of());
+        try {
+            DB.executeUpdate(connection -> PhotoStore.insert(connection, description, key, email, bytes.length,
+                    contentType, contentHash));
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+        return etag;
+    }
+
+    private String putObject(String bucket, String key, String contentType, byte[] content,
+            Map<String, String> metadata) {
+        PutObjectResponse response = s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .metadata(metadata)
+                .build(),
+                RequestBody.fromBytes(content));
+        return ImageRenditions.unquoteEtag(response.eTag());
+    }
+
     private String extractBodyFromInput(Map<String, Object> input, Context context) {
         try {
             // Wenn der Body direkt als String vorhanden ist
@@ -149,12 +456,13 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
     }
 
     private String invokeLambdaSync(String functionName, String payload, Context context) {
+        Trace.Span span = Trace.invoke(functionName);
         try {
             context.getLogger().log("Invoke Lambda: " + functionName);
             
             InvokeRequest request = InvokeRequest.builder()
                     .functionName(functionName)
-                    .payload(SdkBytes.fromUtf8String(payload))
+                    .payload(SdkBytes.fromUtf8String(Trace.inject(payload, span)))
                     .build();
                     
             InvokeResponse invokeResponse = lambdaClient.invoke(request);
@@ -179,6 +487,30 @@ public class LambdaResizeOrchestrator implements RequestHandler<Map<String, Obje
         } catch (Exception e) {
             context.getLogger().log("Fehler beim Aufruf von " + functionName + ": " + e.getMessage());
             return "Exception: " + e.getMessage();
+        } finally {
+            span.end();
+        }
+    }
+
+    // InvocationType Event: Lambda nimmt den Aufruf an (202) und führt ihn im Hintergrund aus
+    private void invokeLambdaAsync(String functionName, String payload, Context context) {
+        context.getLogger().log("Invoke Lambda (Event): " + functionName);
+
+        // Der Span endet mit der Annahme (202), der Resizer läuft danach als eigener Kind-Span weiter
+        Trace.Span span = Trace.invoke(functionName);
+        try {
+            InvokeRequest request = InvokeRequest.builder()
+                    .functionName(functionName)
+                    .invocationType(InvocationType.EVENT)
+                    .payload(SdkBytes.fromUtf8String(Trace.inject(payload, span)))
+                    .build();
+
+            InvokeResponse invokeResponse = lambdaClient.invoke(request);
+            if (invokeResponse.statusCode() != 202) {
+                throw new RuntimeException("Async Invoke von " + functionName + " fehlgeschlagen: Status " + invokeResponse.statusCode());
+            }
+        } finally {
+            span.end();
         }
     }
 
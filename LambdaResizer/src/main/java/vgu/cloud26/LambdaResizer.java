@@ -1,111 +1,231 @@
 package vgu.cloud26;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 // Änderung: Wir akzeptieren direkt eine Map (genau wie beim Upload)
 public class LambdaResizer implements RequestHandler<Map<String, Object>, String> {
 
-    private static final float MAX_DIMENSION = 300; // Etwas größer als 100, damit man was erkennt
-    private final String JPG_TYPE = "jpg";
-    private final String JPG_MIME = "image/jpeg";
-    private final String PNG_TYPE = "png";
-    private final String PNG_MIME = "image/png";
+    // Uploads der Größen laufen parallel, während die nächste Größe gerechnet wird
+    private static final ExecutorService UPLOAD_POOL = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "resizer-upload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // JPEG-Qualität/Progressive kommen aus der Umgebung, die Writer bleiben über warme Aufrufe erhalten
+    private static final ImageEncoder ENCODER = ImageEncoder.fromEnvironment();
+
+    // --- DATENBANK (Bild-Metadaten in Photos und Status asynchroner Jobs aus dem Orchestrator) ---
+    private static final String RDS_INSTANCE_HOSTNAME = "database-1.cdq0ekg8q844.ap-southeast-2.rds.amazonaws.com";
+    private static final int RDS_INSTANCE_PORT = 3306;
+    private static final String DB_USER = "cloud26";
+    private static final String JDBC_URL = "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME + ":" + RDS_INSTANCE_PORT + "/cloud26";
 
-    private final S3Client s3Client = S3Client.builder()
-            .region(Region.AP_SOUTHEAST_2)
-            .build();
+    private static final RdsConnectionProvider DB =
+            new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
+
+    private final S3Client s3Client = AwsClients.s3();
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private String handle(Map<String, Object> input, Context context) {
         LambdaLogger logger = context.getLogger();
         logger.log("RESIZER GESTARTET via Orchestrator");
 
+        // Nur gesetzt, wenn der Orchestrator im async Modus aufruft
+        String jobId = (String) input.get("jobId");
+        if (jobId != null) {
+            updateJob(logger, jobId, null, null);
+        }
+
         try {
             // 1. Parameter auslesen
             String srcBucket = (String) input.get("srcBucket");
             String srcKey = (String) input.get("srcKey");
             String dstBucket = (String) input.get("dstBucket");
             String dstKey = (String) input.get("dstKey");
+            List<Integer> sizes = ImageRenditions.parseSizes(input.get("sizes"));
+
+            // 1b. Thumbnails schon aktuell (gleicher Quell-ETag, gleiche Parameter)? "force": true rechnet immer neu
+            if (!Boolean.parseBoolean(String.valueOf(input.get("force")))) {
+                Map<String, String> fresh = freshThumbnail(srcBucket, srcKey, dstBucket, dstKey, sizes);
+                if (fresh != null) {
+                    logger.log("Thumbnails für " + srcKey + " sind aktuell, kein Resize");
+                    recordImageInfo(logger, srcKey, intOrZero(fresh.get(ImageRenditions.META_SOURCE_WIDTH)),
+                            intOrZero(fresh.get(ImageRenditions.META_SOURCE_HEIGHT)),
+                            ImageRenditions.renditionKey(dstKey, ImageRenditions.thumbnailSize(sizes)));
+                    if (jobId != null) {
+                        updateJob(logger, jobId, ResizeJobStore.STATUS_DONE, null);
+                    }
+                    return "Erfolg: Thumbnails aktuell, kein Resize (" + sizes.size() + " Größen)";
+                }
+            }
 
             logger.log("Download von: " + srcBucket + "/" + srcKey);
 
-            // 2. Download
-            InputStream s3ObjectStream = getObject(srcBucket, srcKey);
-            BufferedImage srcImage = ImageIO.read(s3ObjectStream);
+            // 2. Download (einmal für alle Größen) + 3. Resize/Encode + 4. Upload je Größe
+            List<CompletableFuture<Void>> uploads = new ArrayList<>();
+            AtomicReference<ImageRenditions.Rendition> thumbnail = new AtomicReference<>();
+            boolean isImage;
+            try (ResponseInputStream<GetObjectResponse> s3ObjectStream = getObject(srcBucket, srcKey)) {
+                // ETag der tatsächlich gelesenen Version, nicht eines früheren HEAD
+                String sourceEtag = ImageRenditions.unquoteEtag(s3ObjectStream.response().eTag());
+                isImage = ImageRenditions.render(s3ObjectStream, sizes, dstKey, ENCODER, rendition -> {
+                    thumbnail.set(ImageRenditions.pickThumbnail(thumbnail.get(), rendition));
+                    logger.log("Upload nach: " + dstBucket + "/" + rendition.key
+                            + " (" + rendition.format + ", " + rendition.content.length + " Bytes)");
+                    Map<String, String> metadata = sourceEtag == null
+                            ? Map.of() : ImageRenditions.metadata(rendition, sourceEtag, ENCODER);
+                    uploads.add(CompletableFuture.runAsync(
+                            () -> putObject(rendition.content, dstBucket, rendition.key, rendition.contentType, metadata),
+                            UPLOAD_POOL));
+                });
+            }
 
-            if (srcImage == null) {
+            if (!isImage) {
                 logger.log("FEHLER: Bild konnte nicht gelesen werden (null).");
+                if (jobId != null) {
+                    updateJob(logger, jobId, ResizeJobStore.STATUS_FAILED, "Kein Bild");
+                }
                 return "Fehler: Kein Bild";
             }
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
 
-            // 3. Resize
-            BufferedImage newImage = resizeImage(srcImage);
-
-            // 4. Upload
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            // Wir speichern einfach alles als JPG, das ist am robustesten für den Test
-            ImageIO.write(newImage, "jpg", outputStream);
-            
-            logger.log("Upload nach: " + dstBucket + "/" + dstKey);
-            
-            putObject(outputStream, dstBucket, dstKey, JPG_MIME);
+            ImageRenditions.Rendition picked = thumbnail.get();
+            recordImageInfo(logger, srcKey, picked.sourceWidth, picked.sourceHeight, picked.key);
+            if (jobId != null) {
+                updateJob(logger, jobId, ResizeJobStore.STATUS_DONE, null);
+            }
 
-            return "Erfolg: Resize fertig";
+            return "Erfolg: Resize fertig (" + sizes.size() + " Größen)";
 
         } catch (Exception e) {
             // Dieser Fehler wird in den CloudWatch Logs stehen!
             logger.log("CRASH im Resizer: " + e.getMessage());
             e.printStackTrace();
+            if (jobId != null) {
+                updateJob(logger, jobId, ResizeJobStore.STATUS_FAILED, e.getMessage());
+            }
             throw new RuntimeException("Resizer fehlgeschlagen: " + e.getMessage());
         }
     }
 
-    private InputStream getObject(String bucket, String key) {
+    // Abmessungen + Thumbnail-Key in Photos, damit die Galerie ohne S3-Listing auskommt.
+    // Wie beim Job-Status: ein DB-Fehler lässt den Resize nicht scheitern.
+    private void recordImageInfo(LambdaLogger logger, String srcKey, int width, int height, String thumbnailKey) {
+        try {
+            if (!DB.execute(connection -> PhotoStore.updateImageInfo(connection, srcKey, width, height, thumbnailKey))) {
+                logger.log("Kein Photos-Eintrag für " + srcKey);
+            }
+        } catch (Exception e) {
+            logger.log("WARNUNG: Photos-Eintrag für " + srcKey + " nicht aktualisiert: " + e.getMessage());
+        }
+    }
+
+    // status == null -> Job gestartet. Fehler beim Status-Update brechen den Resize nicht ab.
+    private void updateJob(LambdaLogger logger, String jobId, String status, String error) {
+        try {
+            if (status == null) {
+                DB.executeUpdate(connection -> ResizeJobStore.markStarted(connection, jobId));
+            } else {
+                DB.executeUpdate(connection -> ResizeJobStore.markFinished(connection, jobId, status, error));
+            }
+        } catch (Exception e) {
+            logger.log("WARNUNG: Job " + jobId + " konnte nicht aktualisiert werden: " + e.getMessage());
+        }
+    }
+
+    // HEAD auf Original und alle Renditions gleichzeitig. Metadaten der Thumbnail-Rendition,
+    // wenn jede Rendition zum aktuellen Original und zu den Parametern passt, sonst null.
+    private Map<String, String> freshThumbnail(String srcBucket, String srcKey, String dstBucket, String dstKey,
+            List<Integer> sizes) {
+        CompletableFuture<HeadObjectResponse> source =
+                CompletableFuture.supplyAsync(() -> headObject(srcBucket, srcKey), UPLOAD_POOL);
+        List<CompletableFuture<HeadObjectResponse>> renditions = new ArrayList<>(sizes.size());
+        for (int size : sizes) {
+            String key = ImageRenditions.renditionKey(dstKey, size);
+            renditions.add(CompletableFuture.supplyAsync(() -> headObject(dstBucket, key), UPLOAD_POOL));
+        }
+
+        HeadObjectResponse sourceHead = source.join();
+        if (sourceHead == null) {
+            // Original fehlt: der normale Weg liefert die passende Fehlermeldung
+            return null;
+        }
+        String sourceEtag = ImageRenditions.unquoteEtag(sourceHead.eTag());
+        int thumbnailSize = ImageRenditions.thumbnailSize(sizes);
+        Map<String, String> thumbnail = null;
+        for (int i = 0; i < sizes.size(); i++) {
+            HeadObjectResponse head = renditions.get(i).join();
+            if (head == null || !ImageRenditions.isFresh(head.metadata(), sourceEtag, sizes.get(i), ENCODER)) {
+                return null;
+            }
+            if (sizes.get(i) == thumbnailSize) {
+                thumbnail = head.metadata();
+            }
+        }
+        return thumbnail;
+    }
+
+    // null, wenn das Objekt nicht existiert (NoSuchKeyException) oder der HEAD sonst scheitert - dann wird eben neu gerechnet
+    private HeadObjectResponse headObject(String bucket, String key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            return null;
+        }
+    }
+
+    private ResponseInputStream<GetObjectResponse> getObject(String bucket, String key) {
         return s3Client.getObject(GetObjectRequest.builder()
                 .bucket(bucket).key(key).build());
     }
 
-    private void putObject(ByteArrayOutputStream outputStream, String bucket, String key, String contentType) {
+    private void putObject(byte[] content, String bucket, String key, String contentType, Map<String, String> metadata) {
         s3Client.putObject(PutObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
                 .contentType(contentType)
+                .metadata(metadata)
                 .build(),
-                RequestBody.fromBytes(outputStream.toByteArray()));
+                RequestBody.fromBytes(content));
     }
 
-    private BufferedImage resizeImage(BufferedImage srcImage) {
-        int srcWidth = srcImage.getWidth();
-        int srcHeight = srcImage.getHeight();
-        float scalingFactor = Math.min(MAX_DIMENSION / srcWidth, MAX_DIMENSION / srcHeight);
-        int width = (int) (scalingFactor * srcWidth);
-        int height = (int) (scalingFactor * srcHeight);
-
-        BufferedImage resizedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D graphics = resizedImage.createGraphics();
-        graphics.setPaint(Color.white);
-        graphics.fillRect(0, 0, width, height);
-        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        graphics.drawImage(srcImage, 0, 0, width, height, null);
-        graphics.dispose();
-        return resizedImage;
+    private static int intOrZero(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
-}
\ No newline at end of file
+}
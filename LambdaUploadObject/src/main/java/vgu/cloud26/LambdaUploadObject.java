@@ -1,21 +1,27 @@
 package vgu.cloud26;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.rds.RdsUtilities;
-import software.amazon.awssdk.services.rds.model.GenerateAuthenticationTokenRequest;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 public class LambdaUploadObject implements RequestHandler<Map<String, Object>, String> {
@@ -26,64 +32,99 @@ public class LambdaUploadObject implements RequestHandler<Map<String, Object>, S
     private static final String DB_USER = "cloud26";
     private static final String JDBC_URL = "jdbc:mysql://" + RDS_INSTANCE_HOSTNAME + ":" + RDS_INSTANCE_PORT + "/cloud26";
 
+    // IAM-Token und Verbindung werden über warme Aufrufe wiederverwendet
+    private static final RdsConnectionProvider DB =
+            new RdsConnectionProvider(JDBC_URL, RDS_INSTANCE_HOSTNAME, RDS_INSTANCE_PORT, DB_USER);
+
+    // Batch-Upload: so viele S3 PUTs gleichzeitig (Env UPLOAD_PARALLELISM, Standard 8)
+    private static final int UPLOAD_PARALLELISM = parallelism(System.getenv("UPLOAD_PARALLELISM"), 8);
+
+    private static final ExecutorService UPLOAD_POOL = Executors.newFixedThreadPool(UPLOAD_PARALLELISM, r -> {
+        Thread t = new Thread(r, "upload-batch");
+        t.setDaemon(true);
+        return t;
+    });
+
+
+    // Bekannter Inhalt (SHA-256 in Photos.ContentHash) wird nicht noch einmal hochgeladen, nur eingetragen.
+    // CONTENT_DEDUP=false schaltet das ab, pro Aufruf "dedup": false (z.B. Orchestrator, der schon geprüft hat)
+    private static final boolean DEDUP_DEFAULT = !"false".equalsIgnoreCase(System.getenv("CONTENT_DEDUP"));
+
+    // Thumbnails bekannter Inhalte werden beim ersten Duplikat mit unter den Hash-Key kopiert (SharedContent)
+    private static final String RESIZED_BUCKET = Config.resizedBucket();
+    private static final String RESIZED_PREFIX = "resized-";
+
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        Trace trace = Trace.begin(context, input);
+        Metrics metrics = Metrics.begin(context);
+        try {
+            return handle(input, context);
+        } finally {
+            metrics.flush();
+            trace.end();
+        }
+    }
+
+    private String handle(Map<String, Object> input, Context context) {
         
         context.getLogger().log("Upload Lambda gestartet via Orchestrator.");
 
+        // Album-Upload: {"bucket": ..., "email": ..., "files": [{"content", "key", "description"}, ...]}
+        if (input.get("files") instanceof List) {
+            return handleBatch(input, context);
+        }
+
         // 1. Daten auslesen (Jetzt auch Email und Description!)
         String content = (String) input.get("content");
         String objName = (String) input.get("key");
         String bucketName = (String) input.get("bucket");
-        String email = (String) input.get("email");         // NEU
-        String description = (String) input.get("description"); // NEU
-        
         // Fallback, falls null (damit die DB nicht abstürzt)
-        if (email == null) email = "";
-        if (description == null) description = "";
+        String email = input.get("email") == null ? "" : (String) input.get("email");                   // NEU
+        String description = input.get("description") == null ? "" : (String) input.get("description"); // NEU
+        String contentType = input.get("contentType") == null
+                ? MimeTypes.forKey(objName) : (String) input.get("contentType");
 
         if (content == null || objName == null || bucketName == null) {
             context.getLogger().log("FEHLER: Wichtige Parameter (content/key/bucket) fehlen!");
             return "Fehler: Parameter fehlen";
         }
+        if (SharedContent.isSharedKey(objName)) {
+            return "Fehler: Keys mit " + SharedContent.PREFIX + " sind für deduplizierte Inhalte reserviert";
+        }
 
         context.getLogger().log("Versuche Upload: " + objName + " nach " + bucketName);
 
         try {
+            // --- SCHRITT 0: INHALT SCHON BEKANNT? ---
+            // Einmal dekodieren (Hash + PUT); mehr als ~4 MB lässt das 6-MB-Request-Limit ohnehin nicht zu
+            byte[] objBytes = decode(content);
+            long sizeBytes = objBytes.length;
+            String contentHash = ContentHash.of(objBytes);
+
+            if (dedupEnabled(input)) {
+                PhotoStore.ContentMatch found =
+                        DB.read(connection -> PhotoStore.findByContentHash(connection, contentHash));
+                PhotoStore.ContentMatch match = found == null ? null
+                        : share(AwsClients.s3(), bucketName, found, context);
+                if (match != null) {
+                    long photoId = DB.execute(
+                            connection -> PhotoStore.insertDuplicate(connection, description, email, match));
+                    context.getLogger().log("Inhalt bereits vorhanden als " + match.s3Key + ", kein S3 Upload");
+                    return "Upload übersprungen: Inhalt bereits vorhanden als " + match.s3Key + " (ID " + photoId + ")";
+                }
+            }
+
             // --- SCHRITT A: S3 UPLOAD ---
-            byte[] objBytes = Base64.getDecoder().decode(content.getBytes());
-            
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(objName)
-                    .build();
-
-            S3Client s3Client = S3Client.builder()
-                    .region(Region.AP_SOUTHEAST_2)
-                    .build();
-                    
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(objBytes));
+            putContent(AwsClients.s3(), bucketName, objName, content, objBytes, contentType);
             context.getLogger().log("S3 Upload erfolgreich!");
 
             // --- SCHRITT B: DATENBANK EINTRAG (INSERT) ---
             context.getLogger().log("Verbinde zur Datenbank zum Speichern der Metadaten...");
-            
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            
-            try (Connection connection = DriverManager.getConnection(JDBC_URL, setMySqlConnectionProperties())) {
-                
-                // Der SQL Befehl zum Einfügen
-                String sql = "INSERT INTO Photos (Description, S3Key, Email) VALUES (?, ?, ?)";
-                
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setString(1, description);
-                    statement.setString(2, objName);     // S3Key ist der Dateiname
-                    statement.setString(3, email);
-                    
-                    statement.executeUpdate();
-                    context.getLogger().log("Datenbank Eintrag erfolgreich gespeichert!");
-                }
-            }
+
+            DB.executeUpdate(connection -> PhotoStore.insert(connection, description, objName, email, sizeBytes,
+                    contentType, contentHash));
+            context.getLogger().log("Datenbank Eintrag erfolgreich gespeichert!");
 
             return "Upload und Speichern erfolgreich";
             
@@ -94,24 +135,295 @@ public class LambdaUploadObject implements RequestHandler<Map<String, Object>, S
         }
     }
 
-    // --- HILFSMETHODEN FÜR DB AUTH (Identisch zu LambdaGetPhotosDB) ---
-    private static Properties setMySqlConnectionProperties() throws Exception {
-        Properties mysqlConnectionProperties = new Properties();
-        mysqlConnectionProperties.setProperty("useSSL", "true");
-        mysqlConnectionProperties.setProperty("user", DB_USER);
-        mysqlConnectionProperties.setProperty("password", generateAuthToken());
-        return mysqlConnectionProperties;
+    // ===== BATCH UPLOAD =====
+
+    // S3 PUTs laufen parallel, danach alle Photos-Zeilen in einem Batch/einer Transaktion.
+    // Rückgabe ist JSON mit dem Ergebnis pro Datei (gleiche Reihenfolge wie "files").
+    @SuppressWarnings("unchecked")
+    private String handleBatch(Map<String, Object> input, Context context) {
+        String bucketName = (String) input.get("bucket");
+        String defaultEmail = (String) input.get("email");
+        String defaultDescription = (String) input.get("description");
+        List<Object> files = (List<Object>) input.get("files");
+
+        if (bucketName == null) {
+            context.getLogger().log("FEHLER: Parameter bucket fehlt!");
+            return "Fehler: Parameter fehlen";
+        }
+        context.getLogger().log("Batch-Upload: " + files.size() + " Dateien nach " + bucketName);
+
+        S3Client s3Client = AwsClients.s3();
+        List<FileResult> results = new ArrayList<>(files.size());
+        List<CompletableFuture<Void>> hashes = new ArrayList<>(files.size());
+
+        // --- SCHRITT 0: DEKODIEREN + HASHES (parallel) UND EIN LOOKUP FÜR ALLE ---
+        // Jede Datei wird genau einmal dekodiert, die Bytes gehen danach unverändert in den PUT.
+        // Der Speicher bleibt klein: der ganze Request ist auf 6 MB begrenzt.
+        for (Object entry : files) {
+            Map<String, Object> file = entry instanceof Map ? (Map<String, Object>) entry : Map.of();
+            String content = (String) file.get("content");
+            FileResult result = new FileResult(
+                    (String) file.get("key"),
+                    file.containsKey("description") ? (String) file.get("description") : defaultDescription,
+                    file.containsKey("email") ? (String) file.get("email") : defaultEmail);
+            results.add(result);
+
+            if (content == null || result.key == null) {
+                result.error = "Parameter fehlen (content/key)";
+                continue;
+            }
+            if (SharedContent.isSharedKey(result.key)) {
+                result.error = "Keys mit " + SharedContent.PREFIX + " sind für deduplizierte Inhalte reserviert";
+                continue;
+            }
+            result.contentType = file.containsKey("contentType")
+                    ? (String) file.get("contentType") : MimeTypes.forKey(result.key);
+            hashes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    byte[] bytes = decode(content);
+                    result.sizeBytes = bytes.length;
+                    result.contentHash = ContentHash.of(bytes);
+                    result.bytes = bytes;
+                } catch (IllegalArgumentException e) {
+                    result.error = "Ungültiges Base64: " + e.getMessage();
+                }
+            }, UPLOAD_POOL));
+        }
+        CompletableFuture.allOf(hashes.toArray(new CompletableFuture[0])).join();
+
+        if (dedupEnabled(input)) {
+            Set<String> contentHashes = new LinkedHashSet<>();
+            for (FileResult result : results) {
+                if (result.contentHash != null) {
+                    contentHashes.add(result.contentHash);
+                }
+            }
+            try {
+                Map<String, PhotoStore.ContentMatch> matches =
+                        DB.read(connection -> PhotoStore.findByContentHashes(connection, contentHashes));
+                // Pro Inhalt einmal unter den Hash-Key kopieren (nur beim ersten Duplikat nötig)
+                Map<String, PhotoStore.ContentMatch> shared = new HashMap<>();
+                for (Map.Entry<String, PhotoStore.ContentMatch> match : matches.entrySet()) {
+                    PhotoStore.ContentMatch target = share(s3Client, bucketName, match.getValue(), context);
+                    if (target != null) {
+                        shared.put(match.getKey(), target);
+                    }
+                }
+                for (FileResult result : results) {
+                    result.duplicateOf = result.contentHash == null ? null : shared.get(result.contentHash);
+                }
+            } catch (Exception e) {
+                // Ohne Lookup wird eben alles hochgeladen
+                context.getLogger().log("WARNUNG: Duplikat-Prüfung fehlgeschlagen: " + e.getMessage());
+            }
+
+            // Gleicher Inhalt mehrfach im Batch: nur die erste Datei wird hochgeladen, die übrigen werden
+            // nach dem Batch-Insert zu Duplikaten des geteilten Inhalts (siehe unten)
+            Map<String, FileResult> firstByHash = new HashMap<>();
+            for (FileResult result : results) {
+                if (result.error == null && result.duplicateOf == null) {
+                    FileResult first = firstByHash.putIfAbsent(result.contentHash, result);
+                    result.sameAs = first;
+                }
+            }
+        }
+
+        // --- SCHRITT A: S3 UPLOADS (parallel, begrenzt durch UPLOAD_POOL), bekannte Inhalte nicht ---
+        List<CompletableFuture<Void>> uploads = new ArrayList<>(files.size());
+        for (FileResult result : results) {
+            byte[] bytes = result.bytes;
+            // Bytes nach dem PUT freigeben, Duplikate brauchen sie gar nicht
+            result.bytes = null;
+            if (result.error != null || result.duplicateOf != null || result.sameAs != null) {
+                continue;
+            }
+            uploads.add(CompletableFuture.runAsync(() -> {
+                try {
+                    putContent(s3Client, bucketName, result.key, null, bytes, result.contentType);
+                    result.uploaded = true;
+                } catch (Exception e) {
+                    result.error = "S3: " + e.getMessage();
+                }
+            }, UPLOAD_POOL));
+        }
+        CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+
+        // --- SCHRITT B: DATENBANK (ein Batch für alle hochgeladenen Dateien) ---
+        List<PhotoStore.Row> rows = new ArrayList<>();
+        for (FileResult result : results) {
+            if (result.uploaded) {
+                rows.add(new PhotoStore.Row(result.description, result.key, result.email,
+                        result.sizeBytes, result.contentType, result.contentHash));
+            }
+        }
+        try {
+            DB.executeUpdate(connection -> PhotoStore.insertBatch(connection, rows));
+            context.getLogger().log("Datenbank: " + rows.size() + " Einträge gespeichert");
+        } catch (Exception e) {
+            // Transaktion ist zurückgerollt -> hochgeladene Objekte wieder entfernen, sonst fehlen sie in der Galerie
+            context.getLogger().log("CRASH Datenbank-Batch: " + e.getMessage());
+            deleteUploaded(s3Client, bucketName, results, context);
+            for (FileResult result : results) {
+                if (result.uploaded) {
+                    result.uploaded = false;
+                    result.error = "Datenbank: " + e.getMessage();
+                }
+            }
+        }
+
+        // Duplikate innerhalb des Batches: das Original der ersten Datei einmal unter den Hash-Key kopieren
+        // (CopyObject, keine Bytes durch die Lambda). Duplikat-Zeilen zeigen nur auf Hash-Keys, der Key
+        // der ersten Datei darf später überschrieben oder gelöscht werden.
+        Map<String, PhotoStore.ContentMatch> sharedInBatch = new HashMap<>();
+        for (FileResult result : results) {
+            if (result.sameAs == null) {
+                continue;
+            }
+            FileResult first = result.sameAs;
+            if (!first.uploaded) {
+                result.error = "Gleicher Inhalt wie " + first.key + ", dessen Upload fehlgeschlagen ist";
+                continue;
+            }
+            try {
+                result.duplicateOf = sharedInBatch.computeIfAbsent(first.contentHash, contentHash ->
+                        SharedContent.shareUploaded(s3Client, bucketName, first.key, contentHash,
+                                first.sizeBytes, first.contentType));
+            } catch (Exception e) {
+                result.error = "S3: " + e.getMessage();
+            }
+        }
+
+        // Bekannte Inhalte: nur eine Zeile, die auf das vorhandene Original und Thumbnail zeigt
+        for (FileResult result : results) {
+            if (result.duplicateOf != null) {
+                try {
+                    result.photoId = DB.execute(connection -> PhotoStore.insertDuplicate(connection,
+                            result.description, result.email, result.duplicateOf));
+                    result.uploaded = true;
+                } catch (Exception e) {
+                    result.error = "Datenbank: " + e.getMessage();
+                }
+            }
+        }
+        int duplicates = 0;
+        for (FileResult result : results) {
+            if (result.duplicateOf != null && result.uploaded) {
+                duplicates++;
+            }
+        }
+
+        // --- SCHRITT C: ERGEBNIS PRO DATEI ---
+        JSONArray items = new JSONArray();
+        int succeeded = 0;
+        for (FileResult result : results) {
+            JSONObject item = new JSONObject();
+            item.put("key", result.key == null ? JSONObject.NULL : result.key);
+            item.put("status", result.uploaded ? "ok" : "failed");
+            if (result.duplicateOf != null && result.uploaded) {
+                item.put("duplicateOf", result.duplicateOf.s3Key);
+                item.put("id", result.photoId);
+            }
+            if (result.error != null) {
+                item.put("error", result.error);
+            }
+            items.put(item);
+            if (result.uploaded) {
+                succeeded++;
+            }
+        }
+        JSONObject response = new JSONObject();
+        response.put("total", results.size());
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        response.put("duplicates", duplicates);
+        response.put("results", items);
+        return response.toString();
+    }
+
+    // Kopie unter den Hash-Key fehlgeschlagen -> wie unbekannter Inhalt behandeln und normal hochladen
+    private static PhotoStore.ContentMatch share(S3Client s3Client, String bucketName, PhotoStore.ContentMatch found,
+            Context context) {
+        try {
+            return SharedContent.share(s3Client, bucketName, RESIZED_BUCKET, RESIZED_PREFIX, found);
+        } catch (RuntimeException e) {
+            context.getLogger().log("WARNUNG: " + found.s3Key + " nicht geteilt: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Immer ein einzelner PUT: Lambda-Requests sind auf 6 MB begrenzt, also bleibt jede Datei unter der
+    // Mindest-Teilgröße von Multipart. Große Originale laufen über LambdaPresignUrl (Multipart direkt nach S3).
+    // decoded: schon dekodierter Inhalt oder null
+    private void putContent(S3Client s3Client, String bucketName, String key, String content, byte[] decoded,
+            String contentType) {
+        byte[] objBytes = decoded != null ? decoded : decode(content);
+        s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build(),
+                RequestBody.fromBytes(objBytes));
+    }
+
+    private static byte[] decode(String content) {
+        return Metrics.time(Metrics.BASE64_DECODE, () -> Base64.getDecoder().decode(content));
+    }
+
+    private static boolean dedupEnabled(Map<String, Object> input) {
+        Object dedup = input.get("dedup");
+        return dedup == null ? DEDUP_DEFAULT : Boolean.parseBoolean(String.valueOf(dedup));
     }
 
-    private static String generateAuthToken() throws Exception {
-        RdsUtilities rdsUtilities = RdsUtilities.builder().build();
-        return rdsUtilities.generateAuthenticationToken(
-                GenerateAuthenticationTokenRequest.builder()
-                        .hostname(RDS_INSTANCE_HOSTNAME)
-                        .port(RDS_INSTANCE_PORT)
-                        .username(DB_USER)
-                        .region(Region.AP_SOUTHEAST_2)
-                        .credentialsProvider(DefaultCredentialsProvider.create())
+    private void deleteUploaded(S3Client s3Client, String bucketName, List<FileResult> results, Context context) {
+        List<ObjectIdentifier> keys = new ArrayList<>();
+        for (FileResult result : results) {
+            if (result.uploaded && result.duplicateOf == null) {
+                keys.add(ObjectIdentifier.builder().key(result.key).build());
+            }
+        }
+        // DeleteObjects nimmt höchstens 1000 Keys pro Aufruf
+        for (int i = 0; i < keys.size(); i += 1000) {
+            try {
+                s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder().objects(keys.subList(i, Math.min(i + 1000, keys.size()))).quiet(true).build())
                         .build());
+            } catch (Exception e) {
+                context.getLogger().log("WARNUNG: Aufräumen in S3 fehlgeschlagen: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int parallelism(String value, int fallback) {
+        try {
+            return value == null ? fallback : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static final class FileResult {
+        final String key;
+        final String description;
+        final String email;
+        long sizeBytes = -1;
+        String contentType;
+        volatile String contentHash;
+        // Dekodierter Inhalt bis zum PUT
+        volatile byte[] bytes;
+        // Erste Datei mit demselben Inhalt in diesem Batch, null für die erste selbst
+        FileResult sameAs;
+        // Gesetzt, wenn der Inhalt schon als anderes Bild existiert
+        PhotoStore.ContentMatch duplicateOf;
+        // ID der Duplikat-Zeile, gelöscht wird darüber statt über den geteilten Key
+        long photoId = -1;
+        volatile boolean uploaded;
+        volatile String error;
+
+        FileResult(String key, String description, String email) {
+            this.key = key;
+            this.description = description;
+            this.email = email;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,8 @@
+-- SHA-256 der Originalbytes (Hex), damit erneut hochgeladene Bilder nicht noch einmal nach S3 und
+-- durch den Resizer gehen. Bei bekanntem Inhalt legen LambdaUploadObject und der Orchestrator nur
+-- eine weitere Photos-Zeile an, die auf das vorhandene Original und Thumbnail zeigt.
+-- Ältere Zeilen und Uploads über LambdaPresignUrl haben keinen Hash (NULL) und werden nie getroffen.
+ALTER TABLE Photos
+    ADD COLUMN ContentHash CHAR(64) NULL;
+
+CREATE INDEX idx_photos_contenthash ON Photos (ContentHash);
@@ -0,0 +1,12 @@
+-- Bild-Metadaten in Photos, damit die Galerie (LambdaGetPhotosDB) ohne S3-Listing auskommt.
+-- Upload/Orchestrator/LambdaPresignUrl schreiben SizeBytes und ContentType,
+-- LambdaResizer trägt Width/Height des Originals und den Thumbnail-Key nach.
+ALTER TABLE Photos
+    ADD COLUMN SizeBytes    BIGINT        NULL,
+    ADD COLUMN ContentType  VARCHAR(100)  NULL,
+    ADD COLUMN Width        INT           NULL,
+    ADD COLUMN Height       INT           NULL,
+    ADD COLUMN ThumbnailKey VARCHAR(1024) NULL;
+
+-- Resizer und Delete suchen per S3Key (Präfix-Index, S3Key kann bis 1024 Zeichen lang sein)
+CREATE INDEX idx_photos_s3key ON Photos (S3Key(191));
@@ -0,0 +1,13 @@
+-- Status der asynchronen Resize-Jobs (LambdaResizeOrchestrator mit "async": true).
+-- Der Orchestrator legt den Job an, LambdaResizer trägt Start, Ende und Fehler ein,
+-- das Frontend pollt den Status über den Orchestrator (?jobId=...).
+CREATE TABLE IF NOT EXISTS ResizeJobs (
+    JobId      CHAR(36)      NOT NULL,
+    S3Key      VARCHAR(1024) NOT NULL,
+    Status     VARCHAR(16)   NOT NULL,           -- pending | done | failed
+    Error      VARCHAR(1024) NULL,
+    CreatedAt  TIMESTAMP(3)  NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    StartedAt  TIMESTAMP(3)  NULL,
+    FinishedAt TIMESTAMP(3)  NULL,
+    PRIMARY KEY (JobId)
+);